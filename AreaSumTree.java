@@ -0,0 +1,110 @@
+package main;
+
+// Two dimensional Fenwick tree over a ByteMap, answering rectangle sums and taking point changes in O(log x * log y).
+// A copy of the values it has summed gives the change at each point of a bulk area change. Only a resize rebuilds it.
+public class AreaSumTree implements ByteMapListener {
+	
+	private final ByteMap map;
+	
+	// tree[x * (yPoints + 1) + y], one based on both axes.
+	private int[] tree = new int[0];
+	private byte[] values = new byte[0];
+	private int xPoints;
+	private int yPoints;
+	private boolean stale = true;
+	
+	public AreaSumTree(ByteMap map) {
+		this.map = map;
+	}
+	
+	// Primary Interface Methods
+	
+	// Sum of points in [xStart, xEnd) x [yStart, yEnd).
+	public int sum(int xStart, int yStart, int xEnd, int yEnd) {
+		if (xStart >= xEnd || yStart >= yEnd) return 0;
+		if (stale) rebuild();
+		return prefix(xEnd, yEnd) - prefix(xStart, yEnd) - prefix(xEnd, yStart) + prefix(xStart, yStart);
+	}
+	
+	public void cellChanged(int x, int y, byte oldValue, byte newValue) {
+		if (stale) return;
+		values[x * yPoints + y] = newValue;
+		add(x, y, newValue - oldValue);
+	}
+	
+	// Costs O(area * log x * log y) for the points that actually changed.
+	public void areaChanged(int xStart, int yStart, int xEnd, int yEnd) {
+		if (stale) return;
+		for (int x = xStart; x < xEnd; x++) {
+			for (int y = yStart; y < yEnd; y++) {
+				byte value = map.store.get(x, y);
+				int delta = value - values[x * yPoints + y];
+				if (delta == 0) continue;
+				values[x * yPoints + y] = value;
+				add(x, y, delta);
+			}
+		}
+	}
+	
+	public void resized(int xChange, int yChange) {
+		stale = true;
+	}
+	
+	// Secondary Methods
+	
+	private int prefix(int xEnd, int yEnd) {
+		int total = 0;
+		for (int x = xEnd; x > 0; x -= x & -x) {
+			int row = x * (yPoints + 1);
+			for (int y = yEnd; y > 0; y -= y & -y) {
+				total += tree[row + y];
+			}
+		}
+		return total;
+	}
+	
+	private void add(int xPoint, int yPoint, int delta) {
+		for (int x = xPoint + 1; x <= xPoints; x += x & -x) {
+			int row = x * (yPoints + 1);
+			for (int y = yPoint + 1; y <= yPoints; y += y & -y) {
+				tree[row + y] += delta;
+			}
+		}
+	}
+	
+	// Linear time construction, each node passing its total up to its parent on both axes.
+	private void rebuild() {
+		xPoints = map.getXPoints();
+		yPoints = map.getYPoints();
+		int size = (xPoints + 1) * (yPoints + 1);
+		if (tree.length != size) {
+			tree = new int[size];
+			values = new byte[xPoints * yPoints];
+		}
+		for (int x = 0; x < xPoints; x++) {
+			for (int y = 0; y < yPoints; y++) {
+				byte value = map.store.get(x, y);
+				values[x * yPoints + y] = value;
+				tree[(x + 1) * (yPoints + 1) + y + 1] = value;
+			}
+		}
+		for (int x = 1; x <= xPoints; x++) {
+			int row = x * (yPoints + 1);
+			for (int y = 1; y <= yPoints; y++) {
+				int parent = y + (y & -y);
+				if (parent <= yPoints) tree[row + parent] += tree[row + y];
+			}
+		}
+		for (int x = 1; x <= xPoints; x++) {
+			int parent = x + (x & -x);
+			if (parent > xPoints) continue;
+			int row = x * (yPoints + 1);
+			int parentRow = parent * (yPoints + 1);
+			for (int y = 1; y <= yPoints; y++) {
+				tree[parentRow + y] += tree[row + y];
+			}
+		}
+		stale = false;
+	}
+	
+}
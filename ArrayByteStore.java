@@ -0,0 +1,98 @@
+package main;
+
+import java.util.Arrays;
+
+// Author: Kevin Wang
+
+// Single contiguous heap array, laid out row-major on x: index = x * yPoints + y.
+public class ArrayByteStore implements ByteStore {
+	
+	private int xPoints;
+	private int yPoints;
+	private byte[] data;
+	
+	public ArrayByteStore(int xPoints, int yPoints) {
+		this.xPoints = xPoints;
+		this.yPoints = yPoints;
+		data = new byte[xPoints * yPoints];
+	}
+	
+	// Primary Interface Methods
+	
+	public byte get(int x, int y) {
+		return data[x * yPoints + y];
+	}
+	
+	public void set(int x, int y, byte value) {
+		data[x * yPoints + y] = value;
+	}
+	
+	public void fill(int xStart, int yStart, int xEnd, int yEnd, byte value) {
+		if (yStart >= yEnd) return;
+		for (int x = xStart; x < xEnd; x++) {
+			int row = x * yPoints;
+			Arrays.fill(data, row + yStart, row + yEnd, value);
+		}
+	}
+	
+	public void fillIfBelow(int xStart, int yStart, int xEnd, int yEnd, byte value, byte below) {
+		for (int x = xStart; x < xEnd; x++) {
+			int row = x * yPoints;
+			for (int i = row + yStart; i < row + yEnd; i++) {
+				if (data[i] < below) data[i] = value;
+			}
+		}
+	}
+	
+	public int sum(int xStart, int yStart, int xEnd, int yEnd) {
+		int total = 0;
+		for (int x = xStart; x < xEnd; x++) {
+			int row = x * yPoints;
+			for (int i = row + yStart; i < row + yEnd; i++) {
+				total += data[i];
+			}
+		}
+		return total;
+	}
+	
+	public void incrementBelow(byte value) {
+		for (int i = 0; i < data.length; i++) {
+			if (data[i] < value) data[i] += 1;
+		}
+	}
+	
+	public void decrementAbove(byte value) {
+		for (int i = 0; i < data.length; i++) {
+			if (data[i] > value) data[i] -= 1;
+		}
+	}
+	
+	public void resize(int xChange, int yChange) {
+		int newYPoints = yPoints + Math.abs(yChange);
+		byte[] newData = new byte[(xPoints + Math.abs(xChange)) * newYPoints];
+		int xOffset = xChange < 0 ? -xChange : 0;
+		int yOffset = yChange < 0 ? -yChange : 0;
+		for (int x = 0; x < xPoints; x++) {
+			System.arraycopy(data, x * yPoints, newData, (x + xOffset) * newYPoints + yOffset, yPoints);
+		}
+		xPoints += Math.abs(xChange);
+		yPoints = newYPoints;
+		data = newData;
+	}
+	
+	// Getters, Setters
+	
+	public int getXPoints() {
+		return xPoints;
+	}
+	
+	public int getYPoints() {
+		return yPoints;
+	}
+	
+	// Direct access to the backing array, row-major on x.
+	public byte[] array() {
+		return data;
+	}
+	
+}
@@ -0,0 +1,158 @@
+package main;
+
+import java.util.Arrays;
+
+// Assigns drones to search points by forward auction over a sparse candidate list per drone, maximising total score.
+// Point prices are kept between calls, keyed by ByteMap.pointKey(), so a replan after one drone frees up starts from
+// the prices already settled between the others and normally finishes in a few bids.
+public class AuctionAssigner {
+	
+	private static final double EPSILON = 0.01;
+	// Fraction of a price carried into the next call, so stale contention fades.
+	private static final double PRICE_DECAY = 0.5;
+	private static final double MIN_PRICE = 0.001;
+	private static final int MAX_BIDS_PER_DRONE = 1000;
+	
+	// Prices from previous calls, stored as float bits.
+	private final LongIntMap warmPrices = new LongIntMap(256);
+	
+	// Scratch, grown as needed.
+	private double[] prices = new double[0];
+	private int[] owners = new int[0];
+	private int[] unassigned = new int[0];
+	
+	// Primary Interface Methods
+	
+	// Drone i's candidates are candidatePoint[candidateStart[i] .. candidateStart[i + 1]) with the matching candidateScore.
+	// Points are local indexes into pointKeys. Writes the point assigned to each drone, or -1, into assignment.
+	public void assign(int drones, int[] candidateStart, int[] candidatePoint, double[] candidateScore, long[] pointKeys, int points, int[] assignment) {
+		if (prices.length < points) {
+			prices = new double[Math.max(points, prices.length * 2)];
+			owners = new int[prices.length];
+		}
+		if (unassigned.length < drones) {
+			unassigned = new int[Math.max(drones, unassigned.length * 2)];
+		}
+		for (int j = 0; j < points; j++) {
+			int bits = warmPrices.get(pointKeys[j], 0);
+			prices[j] = bits == 0 ? 0 : Float.intBitsToFloat(bits);
+		}
+		auction(drones, candidateStart, candidatePoint, candidateScore, points, assignment);
+		// With more points than drones the result is only optimal if no unassigned point is priced above an assigned
+		// one. Warm prices can break that, in which case the auction is run again from zero.
+		if (!unassignedPricesBelowAssigned(points)) {
+			Arrays.fill(prices, 0, points, 0);
+			auction(drones, candidateStart, candidatePoint, candidateScore, points, assignment);
+		}
+		
+		// Fade every stored price, then keep this call's prices for next time.
+		int slot = 0;
+		while (slot < warmPrices.capacity()) {
+			if (!warmPrices.usedAt(slot)) {
+				slot++;
+				continue;
+			}
+			float price = (float) (Float.intBitsToFloat(warmPrices.valueAt(slot)) * PRICE_DECAY);
+			if (price < MIN_PRICE) {
+				warmPrices.removeAt(slot);
+			} else {
+				warmPrices.setValueAt(slot, Float.floatToIntBits(price));
+				slot++;
+			}
+		}
+		for (int j = 0; j < points; j++) {
+			float price = (float) (prices[j] * PRICE_DECAY);
+			if (price >= MIN_PRICE) {
+				warmPrices.put(pointKeys[j], Float.floatToIntBits(price));
+			} else {
+				warmPrices.remove(pointKeys[j]);
+			}
+		}
+	}
+	
+	public void clear() {
+		warmPrices.clear();
+	}
+	
+	// Secondary Methods
+	
+	private void auction(int drones, int[] candidateStart, int[] candidatePoint, double[] candidateScore, int points, int[] assignment) {
+		Arrays.fill(owners, 0, points, -1);
+		// Every drone also has a private "stay" option priced below any point still free, so with fewer points than
+		// drones the losers drop out once a point costs more than it is worth instead of bidding up to the cap.
+		double stayValue = stayValue(drones, candidateStart, candidateScore, points);
+		Arrays.fill(assignment, 0, drones, -1);
+		int unassignedCount = 0;
+		for (int i = drones - 1; i >= 0; i--) {
+			if (candidateStart[i + 1] > candidateStart[i]) unassigned[unassignedCount++] = i;
+		}
+		
+		int bids = 0;
+		while (unassignedCount > 0 && bids < MAX_BIDS_PER_DRONE * drones) {
+			int drone = unassigned[--unassignedCount];
+			int bestPoint = -1;
+			double bestValue = Double.NEGATIVE_INFINITY;
+			double secondValue = Double.NEGATIVE_INFINITY;
+			for (int k = candidateStart[drone]; k < candidateStart[drone + 1]; k++) {
+				double value = candidateScore[k] - prices[candidatePoint[k]];
+				if (value > bestValue) {
+					secondValue = bestValue;
+					bestValue = value;
+					bestPoint = candidatePoint[k];
+				} else if (value > secondValue) {
+					secondValue = value;
+				}
+			}
+			if (bestValue < stayValue) {
+				// Staying beats every point left.
+				bids++;
+				continue;
+			}
+			int previousOwner = owners[bestPoint];
+			// A drone with a single candidate bids the minimum for a free point, and against staying for a taken one.
+			if (secondValue == Double.NEGATIVE_INFINITY) {
+				secondValue = previousOwner >= 0 ? stayValue : bestValue;
+			} else {
+				secondValue = Math.max(secondValue, stayValue);
+			}
+			prices[bestPoint] += bestValue - secondValue + EPSILON;
+			owners[bestPoint] = drone;
+			assignment[drone] = bestPoint;
+			if (previousOwner >= 0) {
+				assignment[previousOwner] = -1;
+				unassigned[unassignedCount++] = previousOwner;
+			}
+			bids++;
+		}
+	}
+	
+	// Far enough below every score that a drone only stays once no chain of reassignments could still seat it, so the
+	// auction keeps as many drones busy as it can before it maximises their total score.
+	private double stayValue(int drones, int[] candidateStart, double[] candidateScore, int points) {
+		double minScore = 0;
+		double maxScore = 0;
+		for (int k = candidateStart[0]; k < candidateStart[drones]; k++) {
+			minScore = Math.min(minScore, candidateScore[k]);
+			maxScore = Math.max(maxScore, candidateScore[k]);
+		}
+		double maxPrice = 0;
+		for (int j = 0; j < points; j++) {
+			maxPrice = Math.max(maxPrice, prices[j]);
+		}
+		return minScore - maxPrice - (drones + 1) * (maxScore - minScore + 1);
+	}
+	
+	private boolean unassignedPricesBelowAssigned(int points) {
+		double minAssigned = Double.POSITIVE_INFINITY;
+		double maxUnassigned = 0;
+		for (int j = 0; j < points; j++) {
+			if (owners[j] >= 0) {
+				minAssigned = Math.min(minAssigned, prices[j]);
+			} else {
+				maxUnassigned = Math.max(maxUnassigned, prices[j]);
+			}
+		}
+		return maxUnassigned <= minAssigned;
+	}
+	
+}
@@ -1,5 +1,9 @@
 package main;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
 // Author: Kevin Wang
 
 public class ByteMap {
@@ -14,16 +18,56 @@ public class ByteMap {
 	protected double longitude;
 	protected double latitude;
 	
-	protected byte[][] byteMap;
+	protected ByteStore store;
+	
+	// Fills no larger than this are applied point by point so listeners receive exact changes.
+	private static final int POINTWISE_AREA = 64;
+	
+	protected final List<ByteMapListener> listeners = new ArrayList<>();
+	protected final AreaSumTree areaSums;
+	protected final DirtyTiles dirtyTiles;
+	
+	// Lazy decay, each age() moves values below decayLower up by one and values above decayUpper down by one.
+	// Points outside that range are stamped with the epoch they were last written and their value is derived on read.
+	private boolean decaying = false;
+	private byte decayLower;
+	private byte decayUpper;
+	private int epoch = 0;
+	// Every stamp is current until the next age(), so a second settle() in the same epoch has nothing to do.
+	private int settledEpoch = -1;
+	private final LongIntMap decayEpochs = new LongIntMap(64);
+	// Points whose values below decayLower rise by more than one per age(), by point key. Absent points rise by one.
+	private final LongIntMap decayRates = new LongIntMap(16);
+	
+	// Column spans of the last convex fill, in point coordinates.
+	private double[] spanLow = new double[0];
+	private double[] spanHigh = new double[0];
+	
+	// Target of an incremental snapshot, written one changed tile at a time.
+	private ByteBuffer snapshotOut;
+	private int snapshotBody;
+	private final TileVisitor writeTile = this::writeSnapshotTile;
+	
+	// Accumulated growth on the low sides, keeps point keys stable across resizes.
+	private int xOffset = 0;
+	private int yOffset = 0;
 	
 	public ByteMap(double initLongitude, double initLatitude, double longitude, double latitude, int xPoints, int yPoints) {
+		this(initLongitude, initLatitude, longitude, latitude, new ArrayByteStore(xPoints, yPoints));
+	}
+	
+	public ByteMap(double initLongitude, double initLatitude, double longitude, double latitude, ByteStore store) {
 		this.initLongitude = initLongitude;
 		this.initLatitude = initLatitude;
 		this.longitude = longitude;
 		this.latitude = latitude;
-		this.xPoints = xPoints;
-		this.yPoints = yPoints;
-		byteMap = new byte[xPoints][yPoints];
+		this.xPoints = store.getXPoints();
+		this.yPoints = store.getYPoints();
+		this.store = store;
+		areaSums = new AreaSumTree(this);
+		dirtyTiles = new DirtyTiles(this);
+		listeners.add(areaSums);
+		listeners.add(dirtyTiles);
 	}
 	
 	// Primary Interface Methods
@@ -32,116 +76,432 @@ public class ByteMap {
 		// remove remainder to put into grid.
 		int xInit = (assureRangeX(convertLong(longitude)) / resolution) * resolution;
 		int yInit = (assureRangeY(convertLat(latitude)) / resolution) * resolution;
-		for (int x = xInit; x < xInit + resolution; x++) {
-			for (int y = yInit; y < yInit + resolution; y++) {
-				byteMap[x][y] = value;
-			}
-		}
+		fillArea(xInit, yInit, Math.min(xInit + resolution, xPoints), Math.min(yInit + resolution, yPoints), value);
 	}
 	
 	public int getTotalInArea(double startLong, double startLat, double longitude, double latitude) {
-		int total = 0;
 		int xStart = assureRangeX(convertLong(startLong));
 		int yStart = assureRangeY(convertLat(startLat));
 		int xEnd = assureRangeX(convertLong(startLong + longitude));
 		int yEnd = assureRangeY(convertLat(startLat + latitude));
-		for (int x = xStart; x < xEnd; x++) {
-			for (int y = yStart; y < yEnd; y++) {
-				total += byteMap[x][y];
-			}
-		}
-		return total;
+		settle(xStart, yStart, xEnd, yEnd);
+		return areaSums.sum(xStart, yStart, xEnd, yEnd);
 	}
 	
 	public int getTotalInArea(int xStart, int yStart, int xLength, int yLength) {
-		int total = 0;
-		for (int x = assureRangeX(xStart); x < assureRangeX(xStart + xLength); x++) {
-			for (int y = assureRangeY(yStart); y < assureRangeY(yStart + yLength); y++) {
-				total += byteMap[x][y];
-			}
-		}
-		return total;
+		// Ends are exclusive, so may reach one past the last point.
+		int xEnd = Math.max(Math.min(xStart + xLength, xPoints), 0);
+		int yEnd = Math.max(Math.min(yStart + yLength, yPoints), 0);
+		settle(assureRangeX(xStart), assureRangeY(yStart), xEnd, yEnd);
+		return areaSums.sum(assureRangeX(xStart), assureRangeY(yStart), xEnd, yEnd);
 	}
 	
 	public void setPointIncrementAdjacentThreshold(double longitude, double latitude, byte value, byte valueAdjacent, byte valueThreshold) {
 		int xPt = assureRangeX(convertLong(longitude));
 		int yPt = assureRangeY(convertLat(latitude));
-		for (int x = xPt - 1; x < xPt + 2; x++) {
-			for (int y = yPt - 1; y < yPt + 2; y++) {
-				if (byteMap[x][y] < valueThreshold) byteMap[x][y] += valueAdjacent;
+		for (int x = Math.max(xPt - 1, 0); x < Math.min(xPt + 2, xPoints); x++) {
+			for (int y = Math.max(yPt - 1, 0); y < Math.min(yPt + 2, yPoints); y++) {
+				byte current = getValue(x, y);
+				if (current < valueThreshold) put(x, y, (byte) (current + valueAdjacent));
 			}
 		}
-		byteMap[xPt][yPt] = value;
+		put(xPt, yPt, value);
 	}
 	
 	public void setPoint(double longitude, double latitude, byte value) {
-		byteMap[assureRangeX(convertLong(longitude))][assureRangeY(convertLat(latitude))] = value;
+		put(assureRangeX(convertLong(longitude)), assureRangeY(convertLat(latitude)), value);
 	}
 	
 	public void setArea(double startLong, double startLat, double endLong, double endLat, byte value) {
-		for (int x = assureRangeX(convertLong(startLong)); x < assureRangeX(convertLong(endLong)); x++) {
-			for (int y = assureRangeY(convertLat(startLat)); y < assureRangeY(convertLat(endLat)); y++) {
-				byteMap[x][y] = value;
+		fillArea(assureRangeX(convertLong(startLong)), assureRangeY(convertLat(startLat)), assureRangeX(convertLong(endLong)), assureRangeY(convertLat(endLat)), value);
+	}
+	
+	public void setAreaIfBelow(double startLong, double startLat, double endLong, double endLat, byte value, byte below) {
+		int xStart = assureRangeX(convertLong(startLong));
+		int yStart = assureRangeY(convertLat(startLat));
+		int xEnd = assureRangeX(convertLong(endLong));
+		int yEnd = assureRangeY(convertLat(endLat));
+		if ((xEnd - xStart) * (yEnd - yStart) <= POINTWISE_AREA) {
+			for (int x = xStart; x < xEnd; x++) {
+				for (int y = yStart; y < yEnd; y++) {
+					if (getValue(x, y) < below) put(x, y, value);
+				}
 			}
+		} else {
+			settle(xStart, yStart, xEnd, yEnd);
+			store.fillIfBelow(xStart, yStart, xEnd, yEnd, value, below);
+			stampArea(xStart, yStart, xEnd, yEnd);
+			notifyArea(xStart, yStart, xEnd, yEnd);
 		}
 	}
 	
-	public void setAreaIfBelow(double startLong, double startLat, double endLong, double endLat, byte value, byte below) {
-		for (int x = assureRangeX(convertLong(startLong)); x < assureRangeX(convertLong(endLong)); x++) {
-			for (int y = assureRangeY(convertLat(startLat)); y < assureRangeY(convertLat(endLat)); y++) {
-				if (byteMap[x][y] < below) byteMap[x][y] = value;
+	// Sets each point below below whose centre lies inside the convex polygon to value. The polygon is scanned one column at a time,
+	// each column's span found from where the edges cross its centre line, so the cost follows the filled area rather than its bounds.
+	public void setConvexIfBelow(double[] longitudes, double[] latitudes, int count, byte value, byte below) {
+		// Columns whose centre lines the polygon crosses, with point centres at whole coordinates.
+		double minX = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < count; i++) {
+			double x = toXPoint(longitudes[i]);
+			minX = Math.min(minX, x);
+			maxX = Math.max(maxX, x);
+		}
+		int xStart = Math.max((int) Math.ceil(minX), 0);
+		int xEnd = Math.min((int) Math.floor(maxX), xPoints - 1) + 1;
+		if (xStart >= xEnd) return;
+		if (spanLow.length < xEnd - xStart) {
+			spanLow = new double[Math.max(xEnd - xStart, spanLow.length * 2)];
+			spanHigh = new double[spanLow.length];
+		}
+		for (int i = 0; i < xEnd - xStart; i++) {
+			spanLow[i] = Double.POSITIVE_INFINITY;
+			spanHigh[i] = Double.NEGATIVE_INFINITY;
+		}
+		for (int i = 0; i < count; i++) {
+			int j = i + 1 == count ? 0 : i + 1;
+			double ax = toXPoint(longitudes[i]), ay = toYPoint(latitudes[i]);
+			double bx = toXPoint(longitudes[j]), by = toYPoint(latitudes[j]);
+			int from = Math.max((int) Math.ceil(Math.min(ax, bx)), xStart);
+			int to = Math.min((int) Math.floor(Math.max(ax, bx)), xEnd - 1);
+			for (int x = from; x <= to; x++) {
+				// An edge along a centre line covers its whole length.
+				double y0 = ax == bx ? ay : ay + (x - ax) * (by - ay) / (bx - ax);
+				double y1 = ax == bx ? by : y0;
+				spanLow[x - xStart] = Math.min(spanLow[x - xStart], Math.min(y0, y1));
+				spanHigh[x - xStart] = Math.max(spanHigh[x - xStart], Math.max(y0, y1));
+			}
+		}
+		int area = 0;
+		for (int x = xStart; x < xEnd; x++) {
+			area += Math.max(spanEnd(x - xStart) - spanStart(x - xStart), 0);
+		}
+		if (area == 0) return;
+		if (area <= POINTWISE_AREA) {
+			for (int x = xStart; x < xEnd; x++) {
+				for (int y = spanStart(x - xStart); y < spanEnd(x - xStart); y++) {
+					if (getValue(x, y) < below) put(x, y, value);
+				}
+			}
+		} else {
+			for (int x = xStart; x < xEnd; x++) {
+				int yStart = spanStart(x - xStart);
+				int yEnd = spanEnd(x - xStart);
+				if (yStart >= yEnd) continue;
+				settle(x, yStart, x + 1, yEnd);
+				store.fillIfBelow(x, yStart, x + 1, yEnd, value, below);
+				stampArea(x, yStart, x + 1, yEnd);
+				notifyArea(x, yStart, x + 1, yEnd);
 			}
 		}
 	}
 	
 	public void setArea(int xStart, int yStart, int xEnd, int yEnd, byte value) {
-		for (int x = assureRangeX(xStart); x < assureRangeX(xEnd); x++) {
-			for (int y = assureRangeY(yStart); y < assureRangeY(yEnd); y++) {
-				byteMap[x][y] = value;
+		fillArea(assureRangeX(xStart), assureRangeY(yStart), assureRangeX(xEnd), assureRangeY(yEnd), value);
+	}
+	
+	public void incrementBelowValue(byte value) {
+		settle();
+		store.incrementBelow(value);
+		stampArea(0, 0, xPoints, yPoints);
+		notifyArea(0, 0, xPoints, yPoints);
+	}
+	
+	public void decrementAboveValue(byte value) {
+		settle();
+		store.decrementAbove(value);
+		stampArea(0, 0, xPoints, yPoints);
+		notifyArea(0, 0, xPoints, yPoints);
+	}
+	
+	// Enables lazy decay, after which age() has the effect of incrementBelowValue(lower) followed by decrementAboveValue(upper).
+	public void setDecay(byte lower, byte upper) {
+		settle();
+		decaying = true;
+		decayLower = lower;
+		decayUpper = upper;
+		stampArea(0, 0, xPoints, yPoints);
+	}
+	
+	// Sets how many steps a point below the decay range rises per age(). The point is first brought up to date at its old rate.
+	public void setDecayRate(int x, int y, int rate) {
+		long key = pointKey(x, y);
+		if (rate == decayRates.get(key, 1)) return;
+		if (decaying && decayEpochs.containsKey(key)) put(x, y, getValue(x, y));
+		if (rate == 1) {
+			decayRates.remove(key);
+		} else {
+			decayRates.put(key, rate);
+		}
+	}
+	
+	public int getDecayRate(int x, int y) {
+		return decayRates.get(pointKey(x, y), 1);
+	}
+	
+	// Advances decay by one step. Costs O(1), points are brought up to date when read or settled.
+	public void age() {
+		epoch++;
+	}
+	
+	// Writes the decayed value of every stamped point back into the store, so listeners and the store agree with getValue().
+	// Costs O(points outside the decay range), stamps are dropped as points decay back into it.
+	public void settle() {
+		if (!decaying || settledEpoch == epoch) return;
+		settledEpoch = epoch;
+		int slot = 0;
+		while (slot < decayEpochs.capacity()) {
+			if (!decayEpochs.usedAt(slot) || decayEpochs.valueAt(slot) == epoch) {
+				slot++;
+				continue;
+			}
+			long key = decayEpochs.keyAt(slot);
+			if (settlePoint((int) (key >> 32) + xOffset, (int) key + yOffset, key, decayEpochs.valueAt(slot))) {
+				decayEpochs.setValueAt(slot, epoch);
+				slot++;
+			} else {
+				decayEpochs.removeAt(slot); // Slot may now hold a shifted entry, check it again.
 			}
 		}
+		// Most stamps may have been dropped, keep the next walk in proportion to those left.
+		decayEpochs.trim();
 	}
 	
-	public void incrementBelowValue(byte value) {
-		for (int x = 0; x < xPoints; x++) {
-			for (int y = 0; y < yPoints; y++) {
-				if (byteMap[x][y] < value) byteMap[x][y] += 1;
+	// As settle(), for the points of the [start, end) rectangle only. Costs O(area), for reads and writes of part of the map.
+	public void settle(int xStart, int yStart, int xEnd, int yEnd) {
+		if (!decaying || settledEpoch == epoch || decayEpochs.size() == 0) return;
+		for (int x = xStart; x < xEnd; x++) {
+			for (int y = yStart; y < yEnd; y++) {
+				long key = pointKey(x, y);
+				int stamped = decayEpochs.get(key, epoch);
+				if (stamped == epoch) continue;
+				if (settlePoint(x, y, key, stamped)) {
+					decayEpochs.put(key, epoch);
+				} else {
+					decayEpochs.remove(key);
+				}
 			}
 		}
 	}
 	
-	public void decrementAboveValue(byte value) {
-		for (int x = 0; x < xPoints; x++) {
-			for (int y = 0; y < yPoints; y++) {
-				if (byteMap[x][y] > value) byteMap[x][y] -= 1;
+	// Visits every point in tiles changed after sinceVersion, pass -1 to visit the whole map.
+	// Returns the version to pass on the next call, so each consumer keeps its own position.
+	public long forEachChangedCell(long sinceVersion, CellVisitor visitor) {
+		settle();
+		dirtyTiles.forEachChangedTile(sinceVersion, (xStart, yStart, xEnd, yEnd) -> {
+			for (int x = xStart; x < xEnd; x++) {
+				for (int y = yStart; y < yEnd; y++) {
+					visitor.visit(x, y, store.get(x, y));
+				}
+			}
+		});
+		return dirtyTiles.getVersion();
+	}
+	
+	// Visits every point of the [start, end) rectangle with its current value, read in place without copying the map.
+	public void forEachCell(int xStart, int yStart, int xEnd, int yEnd, CellVisitor visitor) {
+		xEnd = Math.min(xEnd, xPoints);
+		yEnd = Math.min(yEnd, yPoints);
+		for (int x = Math.max(xStart, 0); x < xEnd; x++) {
+			for (int y = Math.max(yStart, 0); y < yEnd; y++) {
+				visitor.visit(x, y, getValue(x, y));
 			}
 		}
 	}
 	
+	public void forEachCell(CellVisitor visitor) {
+		forEachCell(0, 0, xPoints, yPoints, visitor);
+	}
+	
+	// As forEachChangedCell(), but visits each changed tile as a [start, end) rectangle.
+	public long forEachChangedTile(long sinceVersion, TileVisitor visitor) {
+		settle();
+		dirtyTiles.forEachChangedTile(sinceVersion, visitor);
+		return dirtyTiles.getVersion();
+	}
+	
+	public void addListener(ByteMapListener listener) {
+		listeners.add(listener);
+	}
+	
+	public void removeListener(ByteMapListener listener) {
+		listeners.remove(listener);
+	}
+	
+	// Grows the map by the absolute change, negative changes extend the map below its initial longitude/latitude.
 	public void resize(int xChange, int yChange) {
-		byte[][] newMap = new byte[xPoints + Math.abs(xChange)][yPoints + Math.abs(yChange)];
-		int xOffset = 0;
-		int yOffset = 0;
 		double longPerX = longitude / (double) xPoints;
 		double latPerY = latitude / (double) yPoints;
 		if (xChange < 0) {
-			xOffset = xChange;
 			initLongitude += longPerX * (double) xChange;
+			xOffset -= xChange;
 		}
 		if (yChange < 0) {
-			yOffset = yChange;
 			initLatitude += latPerY * (double) yChange;
+			yOffset -= yChange;
+		}
+		store.resize(xChange, yChange);
+		xPoints = store.getXPoints();
+		yPoints = store.getYPoints();
+		longitude += longPerX * (double) Math.abs(xChange);
+		latitude += latPerY * (double) Math.abs(yChange);
+		for (int i = 0; i < listeners.size(); i++) {
+			listeners.get(i).resized(xChange, yChange);
+		}
+	}
+	
+	// Snapshot layout: the four position doubles, xPoints, yPoints, then every point value row-major on x.
+	public int snapshotSize() {
+		return 4 * 8 + 2 * 4 + xPoints * yPoints;
+	}
+	
+	public void writeSnapshot(ByteBuffer out) {
+		writeSnapshot(out, -1);
+	}
+	
+	// As writeSnapshot(out), but only rewrites the points that may have changed since the call that returned sinceVersion, which
+	// must have written into out at the same position: points in tiles changed since, and points still decaying. Pass -1 to
+	// write every point. Returns the version to pass next time.
+	public long writeSnapshot(ByteBuffer out, long sinceVersion) {
+		out.putDouble(initLongitude).putDouble(initLatitude).putDouble(longitude).putDouble(latitude);
+		out.putInt(xPoints).putInt(yPoints);
+		int body = out.position();
+		if (sinceVersion < 0 || sinceVersion < dirtyTiles.getResizeVersion()) {
+			for (int x = 0; x < xPoints; x++) {
+				for (int y = 0; y < yPoints; y++) {
+					out.put(getValue(x, y));
+				}
+			}
+			return dirtyTiles.getVersion();
+		}
+		snapshotOut = out;
+		snapshotBody = body;
+		dirtyTiles.forEachChangedTile(sinceVersion, writeTile);
+		snapshotOut = null;
+		for (int slot = 0; slot < decayEpochs.capacity(); slot++) {
+			if (!decayEpochs.usedAt(slot)) continue;
+			long key = decayEpochs.keyAt(slot);
+			int x = (int) (key >> 32) + xOffset;
+			int y = (int) key + yOffset;
+			out.put(body + x * yPoints + y, getValue(x, y));
+		}
+		out.position(body + xPoints * yPoints);
+		return dirtyTiles.getVersion();
+	}
+	
+	// Restores a snapshot of this map taken after it had grown, points are written through put() so listeners follow.
+	public void readSnapshot(ByteBuffer in) {
+		double snapshotInitLongitude = in.getDouble();
+		double snapshotInitLatitude = in.getDouble();
+		double snapshotLongitude = in.getDouble();
+		double snapshotLatitude = in.getDouble();
+		int snapshotXPoints = in.getInt();
+		int snapshotYPoints = in.getInt();
+		if (snapshotXPoints != xPoints || snapshotYPoints != yPoints) {
+			resize(Math.max(snapshotXPoints - xPoints, 0), Math.max(snapshotYPoints - yPoints, 0));
 		}
+		initLongitude = snapshotInitLongitude;
+		initLatitude = snapshotInitLatitude;
+		longitude = snapshotLongitude;
+		latitude = snapshotLatitude;
 		for (int x = 0; x < xPoints; x++) {
 			for (int y = 0; y < yPoints; y++) {
-				newMap[x + xOffset][y + yOffset] = byteMap[x][y];
+				put(x, y, in.get());
 			}
 		}
-		xPoints += xChange;
-		yPoints += yChange;
-		longitude += longPerX * (double) Math.abs(xChange);
-		latitude += latPerY * (double) Math.abs(yChange);
-		byteMap = newMap;
+	}
+	
+	// Secondary Methods
+	
+	protected void put(int x, int y, byte value) {
+		if (decaying) stamp(x, y, value);
+		byte oldValue = store.get(x, y);
+		if (oldValue == value) return;
+		store.set(x, y, value);
+		for (int i = 0; i < listeners.size(); i++) {
+			listeners.get(i).cellChanged(x, y, oldValue, value);
+		}
+	}
+	
+	protected void fillArea(int xStart, int yStart, int xEnd, int yEnd, byte value) {
+		if ((xEnd - xStart) * (yEnd - yStart) <= POINTWISE_AREA) {
+			for (int x = xStart; x < xEnd; x++) {
+				for (int y = yStart; y < yEnd; y++) {
+					put(x, y, value);
+				}
+			}
+		} else {
+			settle(xStart, yStart, xEnd, yEnd);
+			store.fill(xStart, yStart, xEnd, yEnd, value);
+			stampArea(xStart, yStart, xEnd, yEnd);
+			notifyArea(xStart, yStart, xEnd, yEnd);
+		}
+	}
+	
+	private void writeSnapshotTile(int xStart, int yStart, int xEnd, int yEnd) {
+		for (int x = xStart; x < xEnd; x++) {
+			for (int y = yStart; y < yEnd; y++) {
+				snapshotOut.put(snapshotBody + x * yPoints + y, getValue(x, y));
+			}
+		}
+	}
+	
+	// First and past the last point of a convex fill column.
+	private int spanStart(int column) {
+		return Math.max((int) Math.ceil(spanLow[column]), 0);
+	}
+	
+	private int spanEnd(int column) {
+		return spanHigh[column] < 0 ? 0 : Math.min((int) Math.floor(spanHigh[column]), yPoints - 1) + 1;
+	}
+	
+	// Writes the decayed value of a point stamped at an epoch into the store. Returns false once it is back in the decay range.
+	private boolean settlePoint(int x, int y, long key, int stamped) {
+		byte oldValue = store.get(x, y);
+		byte value = decay(oldValue, epoch - stamped, decayRates.get(key, 1));
+		if (value != oldValue) {
+			store.set(x, y, value);
+			for (int i = 0; i < listeners.size(); i++) {
+				listeners.get(i).cellChanged(x, y, oldValue, value);
+			}
+		}
+		return value < decayLower || value > decayUpper;
+	}
+	
+	private void stamp(int x, int y, byte value) {
+		long key = pointKey(x, y);
+		if (value < decayLower || value > decayUpper) {
+			decayEpochs.put(key, epoch);
+		} else {
+			decayEpochs.remove(key);
+		}
+	}
+	
+	// Re-stamps an area after a bulk store operation, which must only follow a settle() covering the area.
+	private void stampArea(int xStart, int yStart, int xEnd, int yEnd) {
+		if (!decaying) return;
+		for (int x = xStart; x < xEnd; x++) {
+			for (int y = yStart; y < yEnd; y++) {
+				stamp(x, y, store.get(x, y));
+			}
+		}
+	}
+	
+	private byte decay(byte value, int steps, int rate) {
+		// No value is more than 255 steps from the range, which keeps steps * rate from overflowing.
+		if (value < decayLower) return (byte) Math.min(value + Math.min(steps, 255) * rate, decayLower);
+		if (value > decayUpper) return (byte) Math.max(value - steps, decayUpper);
+		return value;
+	}
+	
+	// Key of a point that stays the same when the map grows on its low sides.
+	protected long pointKey(int x, int y) {
+		return ((long) (x - xOffset) << 32) | ((y - yOffset) & 0xFFFFFFFFL);
+	}
+	
+	protected void notifyArea(int xStart, int yStart, int xEnd, int yEnd) {
+		for (int i = 0; i < listeners.size(); i++) {
+			listeners.get(i).areaChanged(xStart, yStart, xEnd, yEnd);
+		}
 	}
 	
 	// Utility Methods
@@ -174,12 +534,66 @@ public class ByteMap {
 		return (((double) yPoint / (double) yPoints) * this.latitude) + initLatitude;
 	}
 	
+	// Positions in point coordinates with point centres at whole values, the inverse of convertXPoint(x + 0.5).
+	protected double toXPoint(double longitude) {
+		return ((longitude - initLongitude) / this.longitude) * xPoints - 0.5;
+	}
+	
+	protected double toYPoint(double latitude) {
+		return ((latitude - initLatitude) / this.latitude) * yPoints - 0.5;
+	}
+	
+	// Positions between points, such as the corners of contour loops.
+	protected double convertXPoint(double xPoint) {
+		return ((xPoint / (double) xPoints) * this.longitude) + initLongitude;
+	}
+	
+	protected double convertYPoint(double yPoint) {
+		return ((yPoint / (double) yPoints) * this.latitude) + initLatitude;
+	}
+	
 	// Getters, Setters
 	
+	public byte getValue(int x, int y) {
+		byte value = store.get(x, y);
+		if (decaying && (value < decayLower || value > decayUpper)) {
+			long key = pointKey(x, y);
+			value = decay(value, epoch - decayEpochs.get(key, epoch), decayRates.get(key, 1));
+		}
+		return value;
+	}
+	
+	public boolean isDecaying() {
+		return decaying;
+	}
+	
+	public byte getDecayLower() {
+		return decayLower;
+	}
+	
+	// Copies the map into a new 2D array, prefer forEachCell() or getValue() for reads.
 	public byte[][] getByteMap() {
+		byte[][] byteMap = new byte[xPoints][yPoints];
+		for (int x = 0; x < xPoints; x++) {
+			for (int y = 0; y < yPoints; y++) {
+				byteMap[x][y] = getValue(x, y);
+			}
+		}
 		return byteMap;
 	}
 	
+	public long getVersion() {
+		return dirtyTiles.getVersion();
+	}
+	
+	public long getResizeVersion() {
+		return dirtyTiles.getResizeVersion();
+	}
+	
+	public ByteStore getStore() {
+		return store;
+	}
+	
 	public int getXPoints() {
 		return xPoints;
 	}
@@ -204,4 +618,28 @@ public class ByteMap {
 		return latitude;
 	}
 	
+	// Points added below the initial longitude/latitude by resize() since creation.
+	public int getXOffset() {
+		return xOffset;
+	}
+	
+	public int getYOffset() {
+		return yOffset;
+	}
+	
+	void setBounds(double initLongitude, double initLatitude, double longitude, double latitude) {
+		this.initLongitude = initLongitude;
+		this.initLatitude = initLatitude;
+		this.longitude = longitude;
+		this.latitude = latitude;
+	}
+	
+	public interface CellVisitor {
+		public void visit(int x, int y, byte value);
+	}
+	
+	public interface TileVisitor {
+		public void visit(int xStart, int yStart, int xEnd, int yEnd);
+	}
+	
 }
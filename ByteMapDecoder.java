@@ -0,0 +1,88 @@
+package main;
+
+import java.io.DataInput;
+import java.io.IOException;
+
+// Applies frames written by ByteMapEncoder directly onto a target ByteMap, which holds the previous frame.
+public class ByteMapDecoder {
+	
+	// Primary Interface Methods
+	
+	// Creates a map from a key frame.
+	public static ByteMap readNewMap(DataInput in) throws IOException {
+		if (in.readByte() != ByteMapEncoder.KEY_FRAME) {
+			throw new IOException("Stream must start with a key frame");
+		}
+		double initLongitude = in.readDouble();
+		double initLatitude = in.readDouble();
+		double longitude = in.readDouble();
+		double latitude = in.readDouble();
+		ByteMap map = new ByteMap(initLongitude, initLatitude, longitude, latitude, in.readInt(), in.readInt());
+		readBody(in, map, true);
+		return map;
+	}
+	
+	// Applies the next frame onto target. Key frames may only grow it, delta frames must follow the frame target holds.
+	public static void readFrame(DataInput in, ByteMap target) throws IOException {
+		byte type = in.readByte();
+		double initLongitude = in.readDouble();
+		double initLatitude = in.readDouble();
+		double longitude = in.readDouble();
+		double latitude = in.readDouble();
+		int xPoints = in.readInt();
+		int yPoints = in.readInt();
+		int xShift = 0;
+		int yShift = 0;
+		if (type == ByteMapEncoder.DELTA_FRAME) {
+			xShift = in.readInt();
+			yShift = in.readInt();
+		} else if (type != ByteMapEncoder.KEY_FRAME) {
+			throw new IOException("Unknown frame type " + type);
+		}
+		int xHigh = xPoints - target.getXPoints() - xShift;
+		int yHigh = yPoints - target.getYPoints() - yShift;
+		if (xShift < 0 || yShift < 0 || xHigh < 0 || yHigh < 0) {
+			throw new IOException("Frame " + xPoints + "x" + yPoints + " does not follow map " + target.getXPoints() + "x" + target.getYPoints());
+		}
+		if (xShift != 0 || yShift != 0) target.resize(-xShift, -yShift);
+		if (xHigh != 0 || yHigh != 0) target.resize(xHigh, yHigh);
+		target.setBounds(initLongitude, initLatitude, longitude, latitude);
+		readBody(in, target, type == ByteMapEncoder.KEY_FRAME);
+	}
+	
+	// Secondary Methods
+	
+	private static void readBody(DataInput in, ByteMap map, boolean keyFrame) throws IOException {
+		int yPoints = map.getYPoints();
+		int total = map.getXPoints() * yPoints;
+		int index = 0;
+		while (index < total) {
+			long token = readVarint(in);
+			int length = (int) (token >>> 1);
+			byte delta = (token & 1) == 0 ? 0 : in.readByte();
+			if (length > total - index) {
+				throw new IOException("Run overruns the map");
+			}
+			if (delta == 0 && !keyFrame) {
+				index += length;
+				continue;
+			}
+			for (int end = index + length; index < end; index++) {
+				int x = index / yPoints;
+				int y = index % yPoints;
+				map.put(x, y, (byte) ((keyFrame ? 0 : map.getValue(x, y)) ^ delta));
+			}
+		}
+	}
+	
+	static long readVarint(DataInput in) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			byte b = in.readByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) return value;
+		}
+		throw new IOException("Malformed varint");
+	}
+	
+}
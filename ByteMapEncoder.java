@@ -0,0 +1,124 @@
+package main;
+
+import java.io.DataOutput;
+import java.io.IOException;
+
+// Streams successive states of one ByteMap as compact frames, read back with ByteMapDecoder.
+// Frame: type byte (KEY_FRAME or DELTA_FRAME), initLongitude, initLatitude, longitude, latitude doubles, xPoints, yPoints ints,
+// then for delta frames the xShift, yShift ints the previous frame moved by when the map grew on its low sides.
+// The body covers every point row-major on x as varint tokens, (length << 1) for a run of unchanged points,
+// or (length << 1 | 1) followed by a byte for a run of points XORed with that byte. Key frames are XORed against zero.
+public class ByteMapEncoder {
+	
+	public static final byte KEY_FRAME = 0;
+	public static final byte DELTA_FRAME = 1;
+	
+	// Previous frame as sent, row-major on x, valid only while hasPrevious. Frames are built in place when the map kept its
+	// size, otherwise into spare, which then swaps with previous. Both only grow.
+	private byte[] previous = new byte[0];
+	private byte[] spare = new byte[0];
+	private boolean hasPrevious = false;
+	private int previousXPoints;
+	private int previousYPoints;
+	private int previousXOffset;
+	private int previousYOffset;
+	
+	// Run being built by the current frame.
+	private int runLength;
+	private byte runValue;
+	
+	// Primary Interface Methods
+	
+	// Writes a delta against the previous frame, or a key frame if there is none.
+	public void writeFrame(ByteMap map, DataOutput out) throws IOException {
+		if (!hasPrevious) {
+			writeKeyFrame(map, out);
+			return;
+		}
+		int xShift = map.getXOffset() - previousXOffset;
+		int yShift = map.getYOffset() - previousYOffset;
+		writeHeader(map, DELTA_FRAME, out);
+		out.writeInt(xShift);
+		out.writeInt(yShift);
+		writeBody(map, xShift, yShift, out);
+	}
+	
+	public void writeKeyFrame(ByteMap map, DataOutput out) throws IOException {
+		writeHeader(map, KEY_FRAME, out);
+		hasPrevious = false;
+		writeBody(map, 0, 0, out);
+	}
+	
+	// Secondary Methods
+	
+	private void writeHeader(ByteMap map, byte type, DataOutput out) throws IOException {
+		out.writeByte(type);
+		out.writeDouble(map.getInitLongitude());
+		out.writeDouble(map.getInitLatitude());
+		out.writeDouble(map.getLongitude());
+		out.writeDouble(map.getLatitude());
+		out.writeInt(map.getXPoints());
+		out.writeInt(map.getYPoints());
+	}
+	
+	private void writeBody(ByteMap map, int xShift, int yShift, DataOutput out) throws IOException {
+		int xPoints = map.getXPoints();
+		int yPoints = map.getYPoints();
+		byte[] current = previous;
+		// A key frame reads nothing from the previous frame, so may always overwrite it.
+		boolean inPlace = !hasPrevious || (xShift == 0 && yShift == 0 && xPoints == previousXPoints && yPoints == previousYPoints);
+		if (!inPlace) {
+			if (spare.length < xPoints * yPoints) spare = new byte[xPoints * yPoints];
+			current = spare;
+			spare = previous;
+		} else if (current.length < xPoints * yPoints) {
+			current = new byte[xPoints * yPoints];
+		}
+		runLength = 0;
+		runValue = 0;
+		for (int x = 0; x < xPoints; x++) {
+			int previousX = x - xShift;
+			boolean previousRow = hasPrevious && previousX >= 0 && previousX < previousXPoints;
+			for (int y = 0; y < yPoints; y++) {
+				int previousY = y - yShift;
+				byte previousValue = previousRow && previousY >= 0 && previousY < previousYPoints ? previous[previousX * previousYPoints + previousY] : 0;
+				byte value = map.getValue(x, y);
+				current[x * yPoints + y] = value;
+				byte delta = (byte) (value ^ previousValue);
+				if (runLength > 0 && delta != runValue) {
+					flushRun(out);
+				}
+				runValue = delta;
+				runLength++;
+			}
+		}
+		if (runLength > 0) {
+			flushRun(out);
+		}
+		previous = current;
+		hasPrevious = true;
+		previousXPoints = xPoints;
+		previousYPoints = yPoints;
+		previousXOffset = map.getXOffset();
+		previousYOffset = map.getYOffset();
+	}
+	
+	private void flushRun(DataOutput out) throws IOException {
+		if (runValue == 0) {
+			writeVarint(out, (long) runLength << 1);
+		} else {
+			writeVarint(out, ((long) runLength << 1) | 1);
+			out.writeByte(runValue);
+		}
+		runLength = 0;
+	}
+	
+	static void writeVarint(DataOutput out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+	
+}
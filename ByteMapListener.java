@@ -0,0 +1,14 @@
+package main;
+
+// Receives changes made through a ByteMap's mutators, used to keep derived layers in step with the map.
+public interface ByteMapListener {
+	
+	public void cellChanged(int x, int y, byte oldValue, byte newValue);
+	
+	// Any point in [start, end) may have changed.
+	public void areaChanged(int xStart, int yStart, int xEnd, int yEnd);
+	
+	// Called after the map has grown, with the change passed to ByteMap.resize(). Listeners may rebuild here, at O(area).
+	public void resized(int xChange, int yChange);
+	
+}
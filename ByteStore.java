@@ -0,0 +1,27 @@
+package main;
+
+// Backing storage for a ByteMap. Points are addressed by (x, y) map indexes, bulk operations work over [start, end) ranges.
+public interface ByteStore {
+	
+	public byte get(int x, int y);
+	
+	public void set(int x, int y, byte value);
+	
+	public void fill(int xStart, int yStart, int xEnd, int yEnd, byte value);
+	
+	public void fillIfBelow(int xStart, int yStart, int xEnd, int yEnd, byte value, byte below);
+	
+	public int sum(int xStart, int yStart, int xEnd, int yEnd);
+	
+	public void incrementBelow(byte value);
+	
+	public void decrementAbove(byte value);
+	
+	// Grows the store by the absolute change. Negative changes grow the low side, shifting existing points up.
+	public void resize(int xChange, int yChange);
+	
+	public int getXPoints();
+	
+	public int getYPoints();
+	
+}
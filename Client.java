@@ -1,11 +1,10 @@
 package main;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.net.Socket;
-import java.net.UnknownHostException;
+import java.nio.channels.UnresolvedAddressException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -27,38 +26,81 @@ public class Client {
 	
     private static int port = 5555;
     private static String host = "localhost";
-    private List<LMCPObject> messageList = new ArrayList<>();
+    // Messages of the current tick. They are packed before the next, so their objects may be reused from tick to tick.
+    private final List<LMCPObject> messageList = new ArrayList<>();
+    private final List<HazardZoneEstimateReport> reports = new ArrayList<>();
+    // Mission commands are held here until the end of the tick, and only sent if they change what a vehicle is doing.
+    private CommandCache commandCache = new CommandCache();
     
     private long time = 0;
     private int timeCount = 0;
     
     //private List<Entity> entityList = new ArrayList<>();
-    private List<Drone> droneList = new ArrayList<>();
+    private DroneRegistry drones = new DroneRegistry();
     private List<Location3D> locationList = new ArrayList<>();
     private List<HazardZoneDetection> newHazardList = new ArrayList<>();
-    private List<LMCPObject> unhandled = new ArrayList<>();
+    // Types the client does not consume are counted and dropped, the last few kept when firehack.unhandled is set.
+    private final MessageDispatcher dispatcher = new MessageDispatcher(Integer.getInteger("firehack.unhandled", 0));
     
-    private Display display = new Display();
+    private final Display display;
     private Control control;
     
+    // Pipeline
+    private final BlockingQueue<Received> inbound = new ArrayBlockingQueue<>(4096);
+    private final BlockingQueue<Outgoing> outbound = new ArrayBlockingQueue<>(16);
+    // A pending repaint, further requests are dropped until it is done.
+    private final BlockingQueue<Boolean> renderRequests = new ArrayBlockingQueue<>(1);
+    private final boolean renderEnabled = Boolean.parseBoolean(System.getProperty("firehack.render", "true"));
+    // Time from reading a SessionStatus to writing the commands of its tick.
+    private final LatencyStats tickLatency = new LatencyStats();
+    // Pipeline stats are logged at FINE every this many ticks.
+    private final int latencyReportInterval = 100;
+    private static final Logger statsLogger = Logger.getLogger(Client.class.getName());
+    private long controlTicks = 0;
+    
+    public Client() {
+    	this(new Display());
+    }
+    
+    // Without a display the client can only be driven directly, as by tests, not run with mainLoop().
+    Client(Display display) {
+    	this.display = display;
+    	registerHandlers();
+    }
+    
     public static void main(String[] args) {
 		Client client = new Client();
 		client.mainLoop();
 	}
     
+	// Runs the control stage on this thread. The reader, writer and render stages run on their own threads, joined by bounded queues,
+	// so a slow tick or repaint never holds up reading the next state. Maps and drones are only touched by this thread.
 	public void mainLoop() {
 		try {
-            Socket socket = connect(host, port);
+            LMCPChannel channel = connect(host, port);
+            startStage("FireHack Reader", () -> readStage(channel));
+            startStage("FireHack Writer", () -> writeStage(channel));
+            if (renderEnabled) {
+            	startStage("FireHack Render", this::renderStage);
+            }
             while (true) {
-            	if (readMessages(socket.getInputStream())) {
+            	Received received = inbound.take();
+            	if (handleMessage(received.message)) {
             		if (control != null) {
             			control.tick(newHazardList, time);
             			newHazardList.clear();
+            			if (++controlTicks % latencyReportInterval == 0 && statsLogger.isLoggable(Level.FINE)) {
+            				statsLogger.fine("Redundant commands dropped: " + commandCache.getDropped());
+            				statsLogger.fine("Unhandled messages dropped: " + dispatcher.getUnhandledTotal());
+            			}
             		} else if (timeCount > 2){
             			genSearchArea();
             		}
-            		display.render();
-            		writeMessages(socket.getOutputStream());
+            		List<LMCPObject> messages = flushMessages();
+            		display.update();
+            		renderRequests.offer(Boolean.TRUE);
+            		outbound.put(new Outgoing(pack(messages), received.receivedNanos));
+            		messages.clear();
             	}
             }
         } catch (Exception ex) {
@@ -66,203 +108,196 @@ public class Client {
             System.exit(0);
         }
 	}
+	
+	// Pipeline Stages
+	
+	private interface Stage {
+		void run() throws Exception;
+	}
+	
+	private void startStage(String name, Stage stage) {
+		Thread thread = new Thread(() -> {
+			try {
+				stage.run();
+			} catch (Exception ex) {
+				Logger.getLogger(Client.class.getName()).log(Level.SEVERE, name + " stopped", ex);
+				System.exit(0);
+			}
+		}, name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	// Frames are split from each chunk read and decoded here, off the control thread.
+	private void readStage(LMCPChannel channel) throws Exception {
+		LMCPChannel.FrameHandler handler = frame -> inbound.put(new Received(LMCPChannel.decode(frame), System.nanoTime()));
+		while (true) {
+			channel.read(handler);
+		}
+	}
+	
+	private void writeStage(LMCPChannel channel) throws Exception {
+		while (true) {
+			Outgoing outgoing = outbound.take();
+			for (byte[] frame : outgoing.frames) {
+				channel.write(frame);
+			}
+			channel.flush();
+			tickLatency.record(System.nanoTime() - outgoing.receivedNanos);
+			if (tickLatency.getCount() % latencyReportInterval == 0 && statsLogger.isLoggable(Level.FINE)) {
+				statsLogger.fine("Tick latency: " + tickLatency.summary());
+			}
+		}
+	}
+	
+	private void renderStage() throws Exception {
+		while (true) {
+			renderRequests.take();
+			display.render();
+		}
+	}
+	
+	private static final class Received {
+		private final LMCPObject message;
+		private final long receivedNanos;
+		
+		private Received(LMCPObject message, long receivedNanos) {
+			this.message = message;
+			this.receivedNanos = receivedNanos;
+		}
+	}
+	
+	// Packed commands from one tick, with the time its SessionStatus was read.
+	private static final class Outgoing {
+		private final List<byte[]> frames;
+		private final long receivedNanos;
+		
+		private Outgoing(List<byte[]> frames, long receivedNanos) {
+			this.frames = frames;
+			this.receivedNanos = receivedNanos;
+		}
+	}
+	
+	// Packs on the control thread, so the message objects are free to reuse once the tick is done.
+	private static List<byte[]> pack(List<LMCPObject> messages) throws Exception {
+		List<byte[]> frames = new ArrayList<>(messages.size());
+		for (int i = 0; i < messages.size(); i++) {
+			frames.add(LMCPChannel.pack(messages.get(i)));
+		}
+		return frames;
+	}
     
-    private Drone getDrone(long ID) {
-    	for (Drone d : droneList) {
-    		if (d.id() == ID) {
-    			return d;
-    		}
+    // Applies one message, returning true at the end of a tick.
+    private boolean handleMessage(LMCPObject o) throws Exception {
+    	return dispatcher.dispatch(o);
+    }
+    
+    // Message Handlers
+    
+    private void registerHandlers() {
+    	dispatcher.register(new HazardZoneDetection(), this::handleHazardZoneDetection);
+    	dispatcher.register(new KeepInZone(), this::handleKeepInZone);
+    	dispatcher.register(new AreaSearchTask(), this::handleAreaSearchTask);
+    	dispatcher.register(new AirVehicleConfiguration(), this::handleAirVehicleConfiguration);
+    	dispatcher.register(new AirVehicleState(), this::handleAirVehicleState);
+    	dispatcher.register(new SessionStatus(), this::handleSessionStatus);
+    }
+    
+    private boolean handleHazardZoneDetection(LMCPObject o) {
+    	HazardZoneDetection hzd = (HazardZoneDetection) o;
+    	if (control == null) {
+    		locationList.add(hzd.getDetectedLocation());
     	}
-    	return null;
+    	newHazardList.add(hzd);
+    	return false;
     }
     
-    private boolean readMessages(InputStream in) throws Exception {
-    	LMCPObject o = LMCPFactory.getObject(in);
-    	if (o instanceof afrl.cmasi.searchai.HazardZoneDetection) {
-        	HazardZoneDetection hzd = (HazardZoneDetection) o;
-        	if (control == null) {
-        		locationList.add(hzd.getDetectedLocation());
-        	}
-        	newHazardList.add(hzd);
-        } else if (o instanceof afrl.cmasi.AbstractGeometry) {
-            unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.KeyValuePair) {
-        	unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.Location3D) {
-        	unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.PayloadAction) {
-        	unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.PayloadConfiguration) {
-        	unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.PayloadState) {
-        	unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.VehicleAction) {
-        	unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.Task) {
-        	unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.SearchTask) {
-        	unhandled.add(o);
-        //} else if (o instanceof afrl.cmasi.AbstractZone) {
-        //	unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.EntityConfiguration) {
-        	unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.FlightProfile) {
-        	unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.AirVehicleConfiguration) {
-            AirVehicleConfiguration avc = (afrl.cmasi.AirVehicleConfiguration) o;
-            if (control == null) {
-            	return false;
-            }
-            Drone d = getDrone(avc.getID());
-            if (d == null) {
-            	d = control.newDrone(avc.getID());
-            	droneList.add(d);
-            }
-            d.setAVC(avc);
-        } else if (o instanceof afrl.cmasi.AirVehicleState) {
-            AirVehicleState avs = (AirVehicleState) o;
-            if (control == null) {
-            	locationList.add(avs.getLocation());
-            	return false;
-            }
-            Drone d = getDrone(avs.getID());
-            if (d == null) {
-            	d = control.newDrone(avs.getID());
-            	droneList.add(d);
-            }
-            d.setAVS(avs);
-        } else if (o instanceof afrl.cmasi.EntityState) {
-        	unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.Wedge) {
-        	unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.AreaSearchTask) {
-        	AreaSearchTask ast = (AreaSearchTask) o;
-        	genSearchArea(ast.getSearchArea());
-        } else if (o instanceof afrl.cmasi.CameraAction) {
-        	unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.CameraConfiguration) {
-        	unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.GimballedPayloadState) {
-        	unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.CameraState) {
-        	unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.Circle) {
-        	unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.GimbalAngleAction) {
-        	unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.GimbalConfiguration) {
-        	unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.GimbalScanAction) {
-        	unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.GimbalStareAction) {
-        	unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.GimbalState) {
-        	unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.GoToWaypointAction) {
-        	unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.KeepInZone) {
-        	KeepInZone kiz = (KeepInZone) o;
-        	if (control == null) {
-        		genSearchArea(kiz.getBoundary());
-        	} else {
-        		// TODO Add to control
-        	}
-        } else if (o instanceof afrl.cmasi.KeepOutZone) {
-        	unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.LineSearchTask) {
-        	unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.NavigationAction) {
-        	unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.LoiterAction) {
-        	unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.LoiterTask) {
-        	unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.Waypoint) {
-        	unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.MissionCommand) {
-        	unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.MustFlyTask) {
-        	unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.OperatorSignal) {
-        	unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.OperatingRegion) {
-        	unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.AutomationRequest) {
-        	unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.PointSearchTask) {
-        	unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.Polygon) {
-        	unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.Rectangle) {
-        	unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.RemoveTasks) {
-        	unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.SessionStatus) {
-            timeCount++;
-        	time = ((SessionStatus) o).getScenarioTime();
-        	if (time == 0) reset();
-        	return true;
-        } else if (o instanceof afrl.cmasi.VehicleActionCommand) {
-        	unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.VideoStreamAction) {
-        	unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.VideoStreamConfiguration) {
-        	unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.VideoStreamState) {
-        	unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.AutomationResponse) {
-        	unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.RemoveZones) {
-        	unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.RemoveEntities) {
-        	unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.FlightDirectorAction) {
-        	unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.WeatherReport) {
-        	unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.FollowPathCommand) {
-        	unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.PathWaypoint) {
-        	unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.StopMovementAction) {
-        	unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.WaypointTransfer) {
-        	unhandled.add(o);
-        } else if (o instanceof afrl.cmasi.PayloadStowAction) {
-        	unhandled.add(o);
-        } else {
-            System.out.println("ERROR - Input Unreadable: " + o.getLMCPTypeName());
-            unhandled.add(o);
-        }
-        return false;
+    private boolean handleKeepInZone(LMCPObject o) {
+    	KeepInZone kiz = (KeepInZone) o;
+    	if (control == null) {
+    		genSearchArea(kiz.getBoundary());
+    	} else {
+    		// TODO Add to control
+    	}
+    	return false;
+    }
+    
+    // A search task bounds the map like a keep in zone, whichever arrives first sets it.
+    private boolean handleAreaSearchTask(LMCPObject o) {
+    	AreaSearchTask ast = (AreaSearchTask) o;
+    	if (control == null) {
+    		genSearchArea(ast.getSearchArea());
+    	}
+    	return false;
+    }
+    
+    private boolean handleAirVehicleConfiguration(LMCPObject o) {
+    	AirVehicleConfiguration avc = (AirVehicleConfiguration) o;
+    	if (control == null) {
+    		return false;
+    	}
+    	Drone d = drones.get(avc.getID());
+    	if (d == null) {
+    		d = control.newDrone(avc.getID());
+    		drones.add(d);
+    	}
+    	d.setAVC(avc);
+    	return false;
+    }
+    
+    private boolean handleAirVehicleState(LMCPObject o) {
+    	AirVehicleState avs = (AirVehicleState) o;
+    	if (control == null) {
+    		locationList.add(avs.getLocation());
+    		return false;
+    	}
+    	int index = drones.indexOf(avs.getID());
+    	if (index < 0) {
+    		index = drones.add(control.newDrone(avs.getID()));
+    	}
+    	drones.setState(index, avs);
+    	commandCache.acknowledge(avs.getID(), avs.getCurrentCommand());
+    	return false;
+    }
+    
+    private boolean handleSessionStatus(LMCPObject o) {
+    	timeCount++;
+    	time = ((SessionStatus) o).getScenarioTime();
+    	if (time == 0) reset();
+    	return true;
     }
 	
     // Write Methods
     
-    public void addMessage(LMCPObject message) {
-    	messageList.add(message);
+    // Ends a tick, adding the mission commands that change what a vehicle is doing to its messages, and returns them.
+    // They must be packed or sent before the next tick, which reuses their objects, and the list cleared.
+    List<LMCPObject> flushMessages() {
+    	commandCache.flush(messageList);
+    	return messageList;
     }
     
-    private void writeMessages(OutputStream out) throws Exception {
-    	for (LMCPObject message : messageList) {
-    		out.write(LMCPFactory.packMessage(message, true));
+    public void addMessage(LMCPObject message) {
+    	if (message instanceof MissionCommand) {
+    		commandCache.offer((MissionCommand) message);
+    	} else {
+    		messageList.add(message);
     	}
-    	messageList.clear();
     }
-
+    
     // TODO Move to Control class.
-    public void addEstimateReports(List<Polygon> estimateZones) throws Exception {
+    public void addEstimateReports(List<Polygon> estimateZones, int[] zoneIds, ZoneEstimator estimator) throws Exception {
     	if (estimateZones == null) {
     		return;
     	}
-    	HazardZoneEstimateReport hzer = new HazardZoneEstimateReport();
     	for (int i = 0; i < estimateZones.size(); i++) {
+    		if (i == reports.size()) reports.add(new HazardZoneEstimateReport());
+    		HazardZoneEstimateReport hzer = reports.get(i);
     		hzer.setEstimatedZoneShape(estimateZones.get(i));
-            hzer.setUniqueTrackingID(i);
+            hzer.setUniqueTrackingID(zoneIds[i]);
             hzer.setPerceivedZoneType(afrl.cmasi.searchai.HazardType.Fire);
-            hzer.setEstimatedGrowthRate(0);
-            hzer.setEstimatedZoneDirection(0);
-            hzer.setEstimatedZoneSpeed(0);
+            hzer.setEstimatedGrowthRate(estimator.getGrowthRate(zoneIds[i]));
+            hzer.setEstimatedZoneDirection(estimator.getDirection(zoneIds[i]));
+            hzer.setEstimatedZoneSpeed(estimator.getSpeed(zoneIds[i]));
             messageList.add(hzer);
     	}
     	
@@ -270,19 +305,22 @@ public class Client {
     
     private void reset() {
     	timeCount = 0;
+    	if (control != null) {
+    		control.close();
+    	}
     	control = null;
-    	droneList = new ArrayList<>();
+    	drones = new DroneRegistry();
+    	commandCache = new CommandCache();
         locationList = new ArrayList<>();
         newHazardList = new ArrayList<>();
-        unhandled = new ArrayList<>();
-        display.render();
+        dispatcher.clearRecent();
     }
     
-	private Socket connect(String host, int port) {
-        Socket socket = null;
+	private LMCPChannel connect(String host, int port) {
+        LMCPChannel channel = null;
         try {
-            socket = new Socket(host, port);
-        } catch (UnknownHostException ex) {
+            channel = LMCPChannel.connect(host, port);
+        } catch (UnresolvedAddressException ex) {
             System.err.println("Host Unknown. Quitting");
             System.exit(0);
         } catch (IOException ex) {
@@ -295,7 +333,7 @@ public class Client {
             return connect(host, port);
         }
         System.out.println("Connected to " + host + ": " + port);
-        return socket;
+        return channel;
     }
 	
 	private void genSearchArea() {
@@ -316,7 +354,7 @@ public class Client {
     			minLatitude = location.getLatitude();
     		}
     	}
-		control = new Control(this, droneList, minLongitude - 0.5 * (maxLongitude - minLongitude), maxLatitude + 0.5 * (maxLatitude - minLatitude), 2 * (maxLongitude - minLongitude), -(2 * (maxLatitude - minLatitude)));
+		control = new Control(this, drones, minLongitude - 0.5 * (maxLongitude - minLongitude), maxLatitude + 0.5 * (maxLatitude - minLatitude), 2 * (maxLongitude - minLongitude), -(2 * (maxLatitude - minLatitude)));
 		display.setByteMap(control.getMapManager().getSearchMap(0));
 	}
 	
@@ -329,13 +367,13 @@ public class Client {
     		float rotation = rectArea.getRotation();
     		double[] rotated1 = rotateAboutPoint(center.getLongitude() - (width/2), center.getLatitude() - (height/2), center.getLongitude(), center.getLatitude(), rotation);
     		double[] rotated2 = rotateAboutPoint(center.getLongitude() + (width/2), center.getLatitude() + (height/2), center.getLongitude(), center.getLatitude(), rotation);
-    		control = new Control(this, droneList, rotated1[0], rotated1[1], rotated2[0] - rotated1[0], rotated2[1] - rotated1[1]);
+    		control = new Control(this, drones, rotated1[0], rotated1[1], rotated2[0] - rotated1[0], rotated2[1] - rotated1[1]);
     		display.setByteMap(control.getMapManager().getSearchMap(0));
     	} else if (area instanceof Circle) {
     		Circle circArea = (Circle) area;
     		Location3D center = circArea.getCenterPoint();
     		double radius = convertToDegrees(circArea.getRadius());
-    		control = new Control(this, droneList, center.getLongitude() - radius, center.getLatitude() - radius, 2 * radius, 2 * radius);
+    		control = new Control(this, drones, center.getLongitude() - radius, center.getLatitude() - radius, 2 * radius, 2 * radius);
     		display.setByteMap(control.getMapManager().getSearchMap(0));
     	} else if (area instanceof Polygon) {
     		Polygon polyArea = (Polygon) area;
@@ -359,10 +397,11 @@ public class Client {
     				minLat = latitude;
     			}
     		}
-    		control = new Control(this, droneList, minLong, minLat, maxLong - minLong, maxLat - minLat);
+    		control = new Control(this, drones, minLong, minLat, maxLong - minLong, maxLat - minLat);
     		display.setByteMap(control.getMapManager().getSearchMap(0));
     	} else {
-    		throw new UnsupportedOperationException("Subclass of AbstractGeometry not supported");
+    		// The map is left unset, so it is built later from the points seen.
+    		Logger.getLogger(Client.class.getName()).warning("Search area skipped, geometry not supported: " + (area == null ? null : area.getLMCPTypeName()));
     	}
 	}
 	
@@ -0,0 +1,167 @@
+package main;
+
+import java.util.Arrays;
+import java.util.List;
+
+import afrl.cmasi.GimbalStareAction;
+import afrl.cmasi.Location3D;
+import afrl.cmasi.MissionCommand;
+import afrl.cmasi.VehicleAction;
+import afrl.cmasi.Waypoint;
+
+// Holds back mission commands that would not change what a vehicle is doing. Commands offered for a vehicle during a tick
+// are collapsed to the last one, which is then dropped if it matches the command the vehicle reports it is executing.
+// What was sent is copied rather than referenced, as the sender reuses its command objects from tick to tick.
+public class CommandCache {
+	
+	// Waypoints and stare points closer than this in degrees, and speeds closer than this, are the same.
+	public static final double POSITION_TOLERANCE = 0.0001;
+	public static final double SPEED_TOLERANCE = 0.5;
+	
+	// Vehicle ID to slot
+	private final LongIntMap slots = new LongIntMap(16);
+	private MissionCommand[] pending = new MissionCommand[8];
+	private SentCommand[] sent = new SentCommand[8];
+	private long[] sentIDs = new long[8];
+	private boolean[] acknowledged = new boolean[8];
+	
+	// Slots with a pending command, in the order first offered.
+	private int[] pendingSlots = new int[8];
+	private int pendingCount = 0;
+	
+	private long nextCommandID = 1;
+	private long dropped = 0;
+	
+	// Primary Interface Methods
+	
+	// Replaces any command already pending for the vehicle this tick.
+	public void offer(MissionCommand command) {
+		int slot = slotOf(command.getVehicleID());
+		if (pending[slot] == null) {
+			if (pendingCount == pendingSlots.length) pendingSlots = Arrays.copyOf(pendingSlots, pendingCount * 2);
+			pendingSlots[pendingCount++] = slot;
+		} else {
+			dropped++;
+		}
+		pending[slot] = command;
+	}
+	
+	// Records the command a vehicle reports executing, from its AirVehicleState.
+	public void acknowledge(long vehicleID, long commandID) {
+		int slot = slots.get(vehicleID, -1);
+		if (slot < 0) return;
+		acknowledged[slot] = sent[slot].present && sentIDs[slot] == commandID;
+	}
+	
+	// Adds the pending commands that would change a vehicle's behaviour to messages, numbering each so its acknowledgement can be matched.
+	public void flush(List<? super MissionCommand> messages) {
+		for (int i = 0; i < pendingCount; i++) {
+			int slot = pendingSlots[i];
+			MissionCommand command = pending[slot];
+			pending[slot] = null;
+			if (acknowledged[slot] && sent[slot].matches(command)) {
+				dropped++;
+				continue;
+			}
+			command.setCommandID(nextCommandID);
+			sent[slot].copy(command);
+			sentIDs[slot] = nextCommandID++;
+			acknowledged[slot] = false;
+			messages.add(command);
+		}
+		pendingCount = 0;
+	}
+	
+	// Secondary Methods
+	
+	private int slotOf(long vehicleID) {
+		int slot = slots.get(vehicleID, -1);
+		if (slot >= 0) return slot;
+		slot = slots.size();
+		if (slot == pending.length) {
+			int capacity = slot * 2;
+			pending = Arrays.copyOf(pending, capacity);
+			sent = Arrays.copyOf(sent, capacity);
+			sentIDs = Arrays.copyOf(sentIDs, capacity);
+			acknowledged = Arrays.copyOf(acknowledged, capacity);
+		}
+		slots.put(vehicleID, slot);
+		sent[slot] = new SentCommand();
+		return slot;
+	}
+	
+	// The parts of the last command sent to a vehicle that matter to its behaviour.
+	private static final class SentCommand {
+		
+		private boolean present = false;
+		private int waypoints = 0;
+		// Longitude, latitude, altitude and speed of each waypoint.
+		private double[] waypointValues = new double[64];
+		private int actions = 0;
+		private Class<?>[] actionTypes = new Class<?>[4];
+		// Longitude and latitude of each stare point, NaN where the action has none.
+		private double[] starePoints = new double[8];
+		
+		private void copy(MissionCommand command) {
+			List<Waypoint> waypointList = command.getWaypointList();
+			waypoints = waypointList.size();
+			if (waypointValues.length < waypoints * 4) waypointValues = new double[waypoints * 8];
+			for (int i = 0; i < waypoints; i++) {
+				Waypoint waypoint = waypointList.get(i);
+				waypointValues[i * 4] = waypoint.getLongitude();
+				waypointValues[i * 4 + 1] = waypoint.getLatitude();
+				waypointValues[i * 4 + 2] = waypoint.getAltitude();
+				waypointValues[i * 4 + 3] = waypoint.getSpeed();
+			}
+			List<VehicleAction> actionList = command.getVehicleActionList();
+			actions = actionList.size();
+			if (actionTypes.length < actions) {
+				actionTypes = new Class<?>[actions * 2];
+				starePoints = new double[actions * 4];
+			}
+			for (int i = 0; i < actions; i++) {
+				VehicleAction action = actionList.get(i);
+				actionTypes[i] = action.getClass();
+				Location3D starePoint = action instanceof GimbalStareAction ? ((GimbalStareAction) action).getStarepoint() : null;
+				starePoints[i * 2] = starePoint == null ? Double.NaN : starePoint.getLongitude();
+				starePoints[i * 2 + 1] = starePoint == null ? Double.NaN : starePoint.getLatitude();
+			}
+			present = true;
+		}
+		
+		// Same route at the same speeds, with the same kinds of action staring at the same points.
+		private boolean matches(MissionCommand command) {
+			List<Waypoint> waypointList = command.getWaypointList();
+			if (waypointList.size() != waypoints) return false;
+			for (int i = 0; i < waypoints; i++) {
+				Waypoint waypoint = waypointList.get(i);
+				if (!samePosition(waypoint, waypointValues[i * 4], waypointValues[i * 4 + 1])) return false;
+				if (Math.abs(waypoint.getAltitude() - waypointValues[i * 4 + 2]) > SPEED_TOLERANCE) return false;
+				if (Math.abs(waypoint.getSpeed() - waypointValues[i * 4 + 3]) > SPEED_TOLERANCE) return false;
+			}
+			List<VehicleAction> actionList = command.getVehicleActionList();
+			if (actionList.size() != actions) return false;
+			for (int i = 0; i < actions; i++) {
+				VehicleAction action = actionList.get(i);
+				if (action.getClass() != actionTypes[i]) return false;
+				if (action instanceof GimbalStareAction
+						&& !samePosition(((GimbalStareAction) action).getStarepoint(), starePoints[i * 2], starePoints[i * 2 + 1])) return false;
+			}
+			return true;
+		}
+		
+		private static boolean samePosition(Location3D location, double longitude, double latitude) {
+			if (location == null || Double.isNaN(longitude)) return location == null && Double.isNaN(longitude);
+			return Math.abs(location.getLongitude() - longitude) <= POSITION_TOLERANCE && Math.abs(location.getLatitude() - latitude) <= POSITION_TOLERANCE;
+		}
+		
+	}
+	
+	// Getters, Setters
+	
+	// Commands collapsed or dropped so far.
+	public long getDropped() {
+		return dropped;
+	}
+	
+}
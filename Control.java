@@ -1,7 +1,11 @@
 package main;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
+import java.util.concurrent.RecursiveAction;
 
 import afrl.cmasi.AbstractGeometry;
 import afrl.cmasi.AltitudeType;
@@ -11,13 +15,14 @@ import afrl.cmasi.Polygon;
 import afrl.cmasi.Rectangle;
 import afrl.cmasi.VehicleActionCommand;
 import afrl.cmasi.searchai.HazardZoneDetection;
+import avtas.lmcp.LMCPObject;
 
 // Author: Kevin Wang
 
 public class Control {
 	
 	private final Client client;
-	private final List<Drone> droneList;
+	private final DroneRegistry drones;
 	private final MapManager mapManager;
 	
 	// Search Area
@@ -32,234 +37,278 @@ public class Control {
 	private final int[] resolutions = {6, 3, 1};
 	
 	private long lastTime = 0;
+	private long lastCheckpointTime = 0;
 	boolean first;
 	
-	public Control(Client client, List<Drone> droneList, double initLongitude, double initLatitude, double longitude, double latitude) {
+	// When firehack.checkpoint names a directory, map state is snapshotted there periodically and journalled in between,
+	// so a restarted client resumes the same search.
+	private final String checkpointDirectory = System.getProperty("firehack.checkpoint");
+	private final long checkpointInterval = 30000;
+	
+	// Hazard boundaries and connected hazard components of the heat map, both maintained incrementally.
+	private final HazardContours hazardContours;
+	private final HazardComponents hazardComponents;
+	// Growth and movement of each hazard component, sampled each tick.
+	private final ZoneEstimator zoneEstimator = new ZoneEstimator();
+	
+	// Reported zone outlines are simplified to within this many heat map points, with at most this many vertices.
+	private final double zoneTolerance = Double.parseDouble(System.getProperty("firehack.zoneTolerance", "1"));
+	private final int zoneMaxVertices = Math.max(3, Integer.getInteger("firehack.zoneVertices", 32));
+	private final PolygonSimplifier zoneSimplifier = new PolygonSimplifier();
+	private int[] zoneKept = new int[64];
+	private final List<Polygon> hazardZones = new ArrayList<>();
+	// Zones and their points, reused for each report. The client packs a report before the next tick.
+	private final List<Polygon> zonePolygons = new ArrayList<>();
+	private final List<Location3D> zoneLocations = new ArrayList<>();
+	private int[] zoneIds = new int[16];
+	
+	// One assigner per search resolution, each keeping its point prices between ticks.
+	private final AuctionAssigner[] auctions = new AuctionAssigner[resolutions.length];
+	// Targets of drones already on a mission, per resolution, which are not offered again.
+	private final BitSet[] inFlightPoints = new BitSet[resolutions.length];
+	// Mission commands from each resolution's planning pass.
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private final List<LMCPObject>[] planMessages = new List[resolutions.length];
+	// Planning passes and their working buffers, reused every tick.
+	private final PlanTask[] planTasks = new PlanTask[resolutions.length];
+	private final PlanScratch[] planScratch = new PlanScratch[resolutions.length];
+	
+	public Control(Client client, DroneRegistry drones, double initLongitude, double initLatitude, double longitude, double latitude) {
 		this.client = client;
-		this.droneList = droneList;
+		this.drones = drones;
 		mapManager = new MapManager(initLongitude, initLatitude, longitude, latitude, mapXPoints, mapYPoints, resolutions);
+		if (checkpointDirectory != null) {
+			mapManager.enableJournal(new File(checkpointDirectory));
+		}
+		hazardContours = new HazardContours(mapManager.getHeatMap(), (byte) 100);
+		hazardComponents = new HazardComponents(mapManager.getHeatMap(), (byte) 100);
+		for (int i = 0; i < auctions.length; i++) {
+			auctions[i] = new AuctionAssigner();
+			inFlightPoints[i] = new BitSet();
+			planMessages[i] = new ArrayList<>();
+			planTasks[i] = new PlanTask(i);
+			planScratch[i] = new PlanScratch();
+		}
 		first = true;
 	}
 	
 	// Primary Interface Method
 	
+	// A tick allocates nothing once its buffers have grown to the map and fleet, the messages it sends included.
 	public void tick(List<HazardZoneDetection> detectionList, long time) throws Exception {
 		mapManager.tick();
-		for (HazardZoneDetection hzd : detectionList) {
-			Drone d = getDrone(hzd.getDetectingEnitiyID());
+		ByteMap heatMap = mapManager.getHeatMap();
+		for (int i = 0; i < detectionList.size(); i++) {
+			HazardZoneDetection hzd = detectionList.get(i);
+			Drone d = drones.get(hzd.getDetectingEnitiyID());
+			Location3D location = hzd.getDetectedLocation();
 			if (d != null) {
 				d.updateDetection(hzd);
 			} else {
-				Location3D location = hzd.getDetectedLocation();
 				mapManager.setHazard(location.getLongitude(), location.getLatitude(), 0);
 			}
 		}
-		for (Drone d : droneList) {
-			d.tick(time);
+		sampleZones(heatMap, time);
+		for (int i = 0; i < drones.size(); i++) {
+			drones.getDrone(i).tick(time);
 		}
 		updateSearchResolutions();
 		distributeSearch(time);
 		if (time - lastTime > 5000 || first) {
 			first = false;
 			lastTime = time;
-			client.addEstimateReports(buildHazardZones());
+			client.addEstimateReports(buildHazardZones(), zoneIds, zoneEstimator);
+		}
+		if (time - lastCheckpointTime > checkpointInterval) {
+			lastCheckpointTime = time;
+			mapManager.checkpoint();
 		}
 	}
 	
+	// Releases the map journal before another Control opens the same directory.
+	public void close() {
+		mapManager.closeJournal();
+	}
+	
 	// Core Methods
 	
 	private void updateSearchResolutions() {
 		
 	}
 	
+	// Resolutions plan on separate maps and drones, so they run concurrently. Each writes its commands to its own buffer,
+	// and the buffers are sent in resolution order so the output does not depend on scheduling. A pass taken by a worker is
+	// waited on by spinning, as a blocking join allocates a wait node each time it parks.
 	private void distributeSearch(long time) {
-		byte[][] pathMap = mapManager.getPathMap().getByteMap();
 		for (int resIndex = 0; resIndex < resolutions.length; resIndex++) {
-			List<Drone> usingDrones = new ArrayList<>();
-			List<int[]> usedNodes = new ArrayList<>();
-			ByteMap map = mapManager.getSearchMap(resIndex);
-			for (Drone drone : droneList) {
-				if (drone.getResolutionIndex() == resIndex) {
-					if (drone.onMission()) {
-						int[] node = new int[2];
-						node[0] = map.convertLong(drone.getTargetLongitude());
-						node[1] = map.convertLat(drone.getTargetLatitude());
-						usedNodes.add(node);
-					} else {
-						usingDrones.add(drone);
-					}
-				}
-			}
-			if (usingDrones.isEmpty()) continue;
-			
-			byte[][] searchMap = map.getByteMap();
-			
-			List<int[]> searchNodes = new ArrayList<>();
-			for (int x = 0; x < searchMap.length; x++) {
-				for (int y = 0; y < searchMap[0].length; y++) {
-					int[] newNode = {x, y, searchMap[x][y]};
-					boolean used = false;
-					for (int[] node : usedNodes) {
-						if (node[0] == newNode[0] && node[1] == newNode[1]) {
-							used = true;
-							break;
-						}
-					}
-					if (!used) {
-						searchNodes.add(newNode);
-					}
-				}
-			}
-			
-			if (searchNodes.isEmpty()) {
-				System.out.println("Error - Coordination system failure, no available nodes at resolution.");
-				System.exit(0);
-			}
-			
-			double[][] moveScore = new double[usingDrones.size()][searchNodes.size()];
-			for (int i = 0; i < usingDrones.size(); i++) {
-				Location3D droneLocation = usingDrones.get(i).avs().getLocation();
-				if (droneLocation == null) continue;
-				for (int j = 0; j < searchNodes.size(); j++) {
-					int[] node = searchNodes.get(j);
-					double distance = Math.hypot(droneLocation.getLatitude() - map.convertYPoint(node[1]), droneLocation.getLongitude() - map.convertXPoint(node[0]));
-					moveScore[i][j] = (double) node[2] - distance * 100;
-				}
-				// TODO Move score adjustments based on individual drone distance rankings.
+			planTasks[resIndex].reinitialize();
+			planTasks[resIndex].time = time;
+		}
+		for (int resIndex = 1; resIndex < resolutions.length; resIndex++) {
+			planTasks[resIndex].fork();
+		}
+		planTasks[0].invoke();
+		for (int resIndex = resolutions.length - 1; resIndex > 0; resIndex--) {
+			PlanTask task = planTasks[resIndex];
+			if (task.tryUnfork()) {
+				task.invoke();
+			} else {
+				while (!task.isDone()) Thread.onSpinWait();
+				task.join();
 			}
-			
-			double longPerX = map.getLongitude() / map.getXPoints();
-			double longPerY = map.getLatitude() / map.getYPoints();
-			int xIndex = 0;
-			int yIndex = 0;
-			for (int i = 0; i < usingDrones.size(); i++) {
-				double scoreMax = -99999;
-				for (int j = 0; j < usingDrones.size(); j++) {
-					for (int k = 0; k < searchNodes.size(); k++) {
-						if (moveScore[j][k] > scoreMax) {
-							scoreMax = moveScore[j][k];
-							xIndex = j;
-							yIndex = k;
-						}
-					}
-				}
-				
-				int[] node = searchNodes.get(yIndex);
-				
-				Drone d = usingDrones.get(xIndex);
-				d.searchLocation(map.convertXPoint(node[0]) + longPerX/2, map.convertYPoint(node[1]) + longPerY/2, time);
-				
-				for (int l = 0; l < searchNodes.size(); l++) {
-					moveScore[xIndex][l] = -99999;
-				}
-				for (int m = 0; m < usingDrones.size(); m++) {
-					moveScore[m][yIndex] = -99999;
-				}
-				// TODO Move score adjustment based on future drone positions, to increase separation.
+		}
+		for (int resIndex = 0; resIndex < resolutions.length; resIndex++) {
+			List<LMCPObject> messages = planMessages[resIndex];
+			for (int i = 0; i < messages.size(); i++) {
+				client.addMessage(messages.get(i));
 			}
-		
 		}
 	}
 	
-	
-	private List<Polygon> buildHazardZones() {
-		List<Polygon> hazardZoneList = new ArrayList<>();
-		
-		ByteMap heatMap = mapManager.getHeatMap();
-		byte[][] byteMap = heatMap.getByteMap();
-		List<int[]> edgePoints = new ArrayList<>();
-		int[][] checkPositions = {{0, 1}, {1, 0}, {0, -1}, {-1, 0}};
-		for (int x = 0; x < mapXPoints; x++) {
-			for (int y = 0; y < mapYPoints; y++) {
-				if (byteMap[x][y] != 100) continue;
-				for (int i = 0; i < checkPositions.length; i++) {
-					int[] checkPosition = checkPositions[i];
-					if (byteMap[x+checkPosition[0]][y+checkPosition[1]] != 100) {
-						int[] edgePoint = {x, y};
-						edgePoints.add(edgePoint);
-						break;
+	private void planResolution(int resIndex, long time, List<LMCPObject> messages) {
+		PlanScratch scratch = planScratch[resIndex];
+		scratch.ensureDrones(drones.size());
+		int[] usingDrones = scratch.usingDrones;
+		int count = 0;
+		ByteMap map = mapManager.getSearchMap(resIndex);
+		int yPoints = map.getYPoints();
+		BitSet usedPoints = inFlightPoints[resIndex];
+		usedPoints.clear();
+		for (int index = 0; index < drones.size(); index++) {
+			Drone drone = drones.getDrone(index);
+			if (drone.getResolutionIndex() == resIndex) {
+				if (drone.onMission()) {
+					int x = map.convertLong(drone.getTargetLongitude());
+					int y = map.convertLat(drone.getTargetLatitude());
+					if (x >= 0 && y >= 0 && x < map.getXPoints() && y < yPoints) {
+						usedPoints.set(x * yPoints + y);
 					}
+				} else if (drones.isLocated(index)) {
+					usingDrones[count++] = index;
 				}
 			}
 		}
-		if (edgePoints.isEmpty()) return hazardZoneList;
+		if (count == 0) return;
 		
-		for (int i = 0; i < edgePoints.size(); i++) {
-			int[] edgePoint = edgePoints.get(i);
-			if (hazardZoneList.isEmpty()) {
-				Polygon newZone = new Polygon();
-				newZone.getBoundaryPoints().add(getLocation(edgePoint[0], edgePoint[1]));
-				hazardZoneList.add(newZone);
-				continue;
-			}
-			
-			List<Double> scores = new ArrayList<>();
-			int lineSteps = 30;
-			for (Polygon zone : hazardZoneList) {
-				List<Location3D> boundaryPts = zone.getBoundaryPoints();
-				int safeCount = 0;
-				for (Location3D point : boundaryPts) {
-					double xStep = (double) (edgePoint[0] - heatMap.convertLong(point.getLongitude())) / (double) lineSteps;
-					double yStep = (double) (edgePoint[1] - heatMap.convertLat(point.getLatitude())) / (double) lineSteps;
-					for (int j = 0; j < lineSteps; j++) {
-						int xPos = (int) (edgePoint[0] - (xStep * j));
-						int yPos = (int) (edgePoint[1] - (yStep * j));
-						if (byteMap[xPos][yPos] < 0) {
-							safeCount++;
-						}
-					}
-				}
-				
-				double score = 0;
-				if (safeCount < boundaryPts.size() * 10) {
-					Location3D centrePoint = getCentrePoint(boundaryPts);
-					double distanceToCentre = Math.hypot(edgePoint[0] - heatMap.convertLong(centrePoint.getLongitude()), edgePoint[1] - heatMap.convertLat(centrePoint.getLatitude()));
-					score = boundaryPts.size() + 100 / ((double)(safeCount + 1) * distanceToCentre);
-				}
-				scores.add(score);
+		// An optimal assignment only ever gives a drone one of its best count points, since fewer drones
+		// than that can hold the others. Those points are found per drone by descending the map pyramid.
+		MapPyramid pyramid = mapManager.getSearchPyramid(resIndex);
+		scratch.ensurePoints(count * count);
+		int[] xBest = scratch.xBest;
+		int[] yBest = scratch.yBest;
+		double[] scoreBest = scratch.scoreBest;
+		long[] pointKeys = scratch.pointKeys;
+		int[] pointCells = scratch.pointCells;
+		double[] pointLongitudes = scratch.pointLongitudes;
+		double[] pointLatitudes = scratch.pointLatitudes;
+		double[] pointValues = scratch.pointValues;
+		LongIntMap pointIndex = scratch.pointIndex;
+		pointIndex.clear();
+		int points = 0;
+		for (int i = 0; i < count; i++) {
+			int index = usingDrones[i];
+			int found = pyramid.bestPoints(drones.getLongitude(index), drones.getLatitude(index), 100, usedPoints, count, xBest, yBest, scoreBest);
+			for (int k = 0; k < found; k++) {
+				long key = map.pointKey(xBest[k], yBest[k]);
+				if (pointIndex.containsKey(key)) continue;
+				pointIndex.put(key, points);
+				pointKeys[points] = key;
+				pointCells[points] = xBest[k] * yPoints + yBest[k];
+				pointLongitudes[points] = map.convertXPoint(xBest[k]);
+				pointLatitudes[points] = map.convertYPoint(yBest[k]);
+				pointValues[points] = map.getValue(xBest[k], yBest[k]);
+				points++;
 			}
-			
-			// Determine max scoring polygon to add to.
-			int scoreMaxIndex = 0;
-			for (int j = 1; j < hazardZoneList.size(); j++) {
-				if (scores.get(j) > scores.get(scoreMaxIndex)) {
-					scoreMaxIndex = j;
-				}
+		}
+		if (points == 0) {
+			System.out.println("Error - Coordination system failure, no available nodes at resolution.");
+			System.exit(0);
+		}
+		
+		// Every drone scores every pooled point, a straight loop over the packed point and drone positions. Points the
+		// drone could not be routed to are left out until the path map changes around them.
+		PathPlanner planner = mapManager.getPathPlanner(resIndex);
+		planner.refresh();
+		scratch.ensureCandidates(count * points);
+		int[] candidateStart = scratch.candidateStart;
+		int[] candidatePoint = scratch.candidatePoint;
+		double[] candidateScore = scratch.candidateScore;
+		int[] pointExcluded = scratch.pointExcluded;
+		int candidates = 0;
+		for (int i = 0; i < count; i++) {
+			int index = usingDrones[i];
+			double droneLongitude = drones.getLongitude(index);
+			double droneLatitude = drones.getLatitude(index);
+			int stamp = ++scratch.excludedStamp;
+			long id = drones.getDrone(index).id();
+			for (int e = 0; e < planner.getExclusionCount(); e++) {
+				if (planner.getExcludedOwner(e) != id) continue;
+				int j = pointIndex.get(planner.getExcludedTarget(e), -1);
+				if (j >= 0) pointExcluded[j] = stamp;
 			}
-			
-			if (scores.get(scoreMaxIndex) > 0) {
-				hazardZoneList.get(scoreMaxIndex).getBoundaryPoints().add(getLocation(edgePoint[0], edgePoint[1]));
-			} else {
-				Polygon newZone = new Polygon();
-				newZone.getBoundaryPoints().add(getLocation(edgePoint[0], edgePoint[1]));
-				hazardZoneList.add(newZone);
+			candidateStart[i] = candidates;
+			for (int j = 0; j < points; j++) {
+				if (pointExcluded[j] == stamp) continue;
+				double dLong = droneLongitude - pointLongitudes[j];
+				double dLat = droneLatitude - pointLatitudes[j];
+				candidatePoint[candidates] = j;
+				candidateScore[candidates] = pointValues[j] - Math.sqrt(dLong * dLong + dLat * dLat) * 100;
+				candidates++;
 			}
 		}
+		candidateStart[count] = candidates;
 		
-		// Merge similar centred hazard zones.
-		for (int i = 0; i < hazardZoneList.size(); i++) {
-			for (int j = i + 1; j < hazardZoneList.size(); j++) {
-				List<Location3D> zone1Pts = hazardZoneList.get(i).getBoundaryPoints();
-				List<Location3D> zone2Pts = hazardZoneList.get(j).getBoundaryPoints();
-				Location3D centre1 = getCentrePoint(zone1Pts);
-				Location3D centre2 = getCentrePoint(zone2Pts);
-				if (Math.abs(centre1.getLongitude() - centre2.getLongitude()) < 0.002 && Math.abs(centre1.getLatitude() - centre2.getLatitude()) < 0.002) {
-					for (Location3D point : zone2Pts) {
-						zone1Pts.add(point);
-					}
-					hazardZoneList.remove(j);
-				}
+		// Auction for the assignment with the best total score, rather than repeatedly taking the best single pair.
+		int[] assignment = scratch.assignment;
+		auctions[resIndex].assign(count, candidateStart, candidatePoint, candidateScore, pointKeys, points, assignment);
+		
+		double longPerX = map.getLongitude() / map.getXPoints();
+		double longPerY = map.getLatitude() / map.getYPoints();
+		for (int i = 0; i < count; i++) {
+			if (assignment[i] < 0) continue;
+			int cell = pointCells[assignment[i]];
+			Drone d = drones.getDrone(usingDrones[i]);
+			double targetLongitude = map.convertXPoint(cell / yPoints) + longPerX/2;
+			double targetLatitude = map.convertYPoint(cell % yPoints) + longPerY/2;
+			if (!d.searchLocation(targetLongitude, targetLatitude, time, messages)) {
+				ByteMap pathMap = mapManager.getPathMap();
+				planner.exclude(d.id(), pointKeys[assignment[i]], pathMap.convertLong(targetLongitude), pathMap.convertLat(targetLatitude));
 			}
+			// TODO Move score adjustment based on future drone positions, to increase separation.
 		}
+	}
+	
+	
+	// One zone per connected hazard component, bounded by its outer loop. The component label of each zone is kept in zoneIds.
+	private List<Polygon> buildHazardZones() {
+		List<Polygon> hazardZoneList = hazardZones;
+		hazardZoneList.clear();
+		int locations = 0;
 		
-		for (int i = 0; i < hazardZoneList.size(); i++) {
-			Polygon hazardZone = hazardZoneList.get(i);
-			if (hazardZone.getBoundaryPoints().size() == 1) {
-				hazardZoneList.remove(hazardZone);
-				i--;
-			} else {
-				orderPointsAngleCentre(hazardZone);
+		// Outer hazard boundaries, already ordered. Only loops through heat map tiles changed since the last report are re-traced.
+		hazardContours.update();
+		for (int loop = 0; loop < hazardContours.getLoopCapacity(); loop++) {
+			int[] vertices = hazardContours.getLoop(loop);
+			if (vertices == null || !hazardContours.isOuter(loop)) continue;
+			int length = hazardContours.getLoopLength(loop);
+			// The first vertex lies between two points, one of them in the component.
+			int x = vertices[0] >> 1;
+			int y = vertices[1] >> 1;
+			int zone = hazardComponents.componentOf(x, y);
+			if (zone < 0) zone = hazardComponents.componentOf(x + (vertices[0] & 1), y + (vertices[1] & 1));
+			if (hazardZoneList.size() == zoneIds.length) zoneIds = Arrays.copyOf(zoneIds, zoneIds.length * 2);
+			zoneIds[hazardZoneList.size()] = zone;
+			if (hazardZoneList.size() == zonePolygons.size()) zonePolygons.add(new Polygon());
+			Polygon hazardZone = zonePolygons.get(hazardZoneList.size());
+			hazardZone.getBoundaryPoints().clear();
+			if (zoneKept.length < length) zoneKept = new int[length];
+			// Loop vertices are in doubled point coordinates.
+			int count = zoneSimplifier.simplifyLoop(vertices, length, 2 * zoneTolerance, zoneMaxVertices, zoneKept);
+			for (int i = 0; i < count; i++) {
+				int vertex = zoneKept[i];
+				hazardZone.getBoundaryPoints().add(getLocation(locations++, vertices[2 * vertex] / 2d, vertices[2 * vertex + 1] / 2d));
 			}
+			hazardZoneList.add(hazardZone);
 		}
 		
 		return hazardZoneList;
@@ -271,109 +320,27 @@ public class Control {
 		return new Drone(client, mapManager, ID);
 	}
 	
-	private Drone getDrone(long ID) {
-    	for (Drone d : droneList) {
-    		if (d.id() == ID) {
-    			return d;
-    		}
-    	}
-    	return null;
-    }
-	
-	private Location3D getLocation(int xPoint, int yPoint) {
-		return new Location3D(mapManager.getHeatMap().convertYPoint(yPoint), mapManager.getHeatMap().convertXPoint(xPoint), 0, AltitudeType.AGL);
-	}
-	
-	// Given a polygon, re-orders the boundary points such that they are, by angle, positioned clockwise about their 2D centre.
-	private void orderPointsAngleCentre(Polygon polygon) {
-		List<Location3D> boundaryPts = polygon.getBoundaryPoints();
-
-		Location3D centrePoint = getCentrePoint(boundaryPts);
-		double centreLong = centrePoint.getLongitude();
-		double centreLat = centrePoint.getLatitude();
-		
-		// Calculate angle relative to centre point and add to angleList
-		List<Double> angleList = new ArrayList<>();
-		for (int i = 0; i < boundaryPts.size(); i++) {
-			Location3D point = boundaryPts.get(i);
-			angleList.add(Math.atan2(point.getLatitude() - centreLat, point.getLongitude() - centreLong));
-		}
-		
-		if (angleList.size() > 3) {
-			for (int i = 0; i < angleList.size(); i++) {
-				for (int j = i + 1; j < angleList.size(); j++) {
-					double angleThis = angleList.get(i);
-					double angleOther = angleList.get(j);
-					if (Math.abs(angleThis - angleOther) < Math.PI/20) { // TODO Angle threshold adjustments based on distance.
-						// Remove closest to centre, then adjust indexes.
-						Location3D pointThis = boundaryPts.get(i);
-						Location3D pointOther = boundaryPts.get(j);
-						double distanceToThis = Math.hypot(centreLong - pointThis.getLongitude(), centreLat - pointThis.getLatitude());
-						double distanceToOther = Math.hypot(centreLong - pointOther.getLongitude(), centreLat - pointOther.getLatitude());
-						if (distanceToThis < distanceToOther) {
-							angleList.remove(i);
-							boundaryPts.remove(i);
-							if (i > 0) i--;
-							j = i;
-						} else {
-							angleList.remove(j);
-							boundaryPts.remove(j);
-							j--;
-							break;
-						}
-					}
-				}
-			}
-		}
-		
-		// Order List
-		while (true) {
-			boolean isDisorder = false;
-			for (int i = 1; i < angleList.size(); i++) {
-				if (angleList.get(i) < angleList.get(i-1)) {
-					double temp = angleList.get(i);
-					angleList.set(i, angleList.get(i-1));
-					angleList.set(i-1, temp);
-					Location3D temp2 = boundaryPts.get(i);
-					boundaryPts.set(i, boundaryPts.get(i-1));
-					boundaryPts.set(i-1, temp2);
-					isDisorder = true;
-				}
-			}
-			if (!isDisorder) {
-				break;
-			}
+	// Samples every hazard component once, as its centroid and half the mean side of its bounding box, the distance from
+	// its centre to the known front. Zones that merged away or vanished since the last tick are dropped.
+	private void sampleZones(ByteMap heatMap, long time) {
+		double pointWidth = Math.abs(heatMap.getLongitude() / heatMap.getXPoints() * 111320 * Math.cos(Math.toRadians(heatMap.getInitLatitude())));
+		double pointHeight = Math.abs(heatMap.getLatitude() / heatMap.getYPoints() * 111320);
+		for (int i = 0; i < hazardComponents.getComponentCount(); i++) {
+			double longitude = heatMap.convertXPoint(hazardComponents.getCentroidX(i) + 0.5);
+			double latitude = heatMap.convertYPoint(hazardComponents.getCentroidY(i) + 0.5);
+			double extent = (hazardComponents.getWidth(i) * pointWidth + hazardComponents.getHeight(i) * pointHeight) / 4;
+			zoneEstimator.addSample(hazardComponents.getLabel(i), longitude, latitude, extent, time);
 		}
+		zoneEstimator.removeUnsampled();
 	}
 	
-	private Location3D getCentrePoint(List<Location3D> points) {
-		if (points.isEmpty()) {
-			throw new IllegalArgumentException();
-		}
-		double maxLong = -99999;
-		double minLong = 99999;
-		double maxLat = -99999;
-		double minLat = 99999;
-		for (int i = 0; i < points.size(); i++) {
-			Location3D point = points.get(i);
-			double longitude = point.getLongitude();
-			double latitude = point.getLatitude();
-			if (longitude > maxLong) {
-				maxLong = longitude;
-			}
-			if (longitude < minLong) {
-				minLong = longitude;
-			}
-			if (latitude > maxLat) {
-				maxLat = latitude;
-			}
-			if (latitude < minLat) {
-				minLat = latitude;
-			}
-		}
-		double centreLong = minLong + ((maxLong - minLong) / 2);
-		double centreLat = minLat + ((maxLat - minLat) / 2);
-		return new Location3D(centreLat, centreLong, 0, AltitudeType.AGL);
+	// Sets the index-th zone location to the point.
+	private Location3D getLocation(int index, double xPoint, double yPoint) {
+		if (index == zoneLocations.size()) zoneLocations.add(new Location3D(0, 0, 0, AltitudeType.AGL));
+		Location3D location = zoneLocations.get(index);
+		location.setLatitude(mapManager.getHeatMap().convertYPoint(yPoint));
+		location.setLongitude(mapManager.getHeatMap().convertXPoint(xPoint));
+		return location;
 	}
 	
 	// Getters, Setters
@@ -397,4 +364,26 @@ public class Control {
 	public MapManager getMapManager() {
 		return mapManager;
 	}
+	
+	// Planning Tasks
+	
+	// One resolution's planning pass, reinitialised and run again each tick.
+	@SuppressWarnings("serial")
+	private final class PlanTask extends RecursiveAction {
+		
+		private final int resIndex;
+		private long time;
+		
+		private PlanTask(int resIndex) {
+			this.resIndex = resIndex;
+		}
+		
+		@Override
+		protected void compute() {
+			List<LMCPObject> messages = planMessages[resIndex];
+			messages.clear();
+			planResolution(resIndex, time, messages);
+		}
+		
+	}
 }
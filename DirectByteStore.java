@@ -0,0 +1,108 @@
+package main;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// Author: Kevin Wang
+
+// Off-heap variant of ArrayByteStore, using the same row-major layout inside a direct buffer.
+// Keeps map data out of the Java heap, so large maps add nothing to garbage collection.
+public class DirectByteStore implements ByteStore {
+	
+	private int xPoints;
+	private int yPoints;
+	private ByteBuffer data;
+	// Second view of data whose position is moved for bulk row writes, and the row written.
+	private ByteBuffer rowView;
+	private byte[] fillRow = new byte[0];
+	
+	public DirectByteStore(int xPoints, int yPoints) {
+		this.xPoints = xPoints;
+		this.yPoints = yPoints;
+		data = ByteBuffer.allocateDirect(xPoints * yPoints);
+		rowView = data.duplicate();
+	}
+	
+	// Primary Interface Methods
+	
+	public byte get(int x, int y) {
+		return data.get(x * yPoints + y);
+	}
+	
+	public void set(int x, int y, byte value) {
+		data.put(x * yPoints + y, value);
+	}
+	
+	public void fill(int xStart, int yStart, int xEnd, int yEnd, byte value) {
+		if (yStart >= yEnd) return;
+		if (fillRow.length < yEnd - yStart) fillRow = new byte[yPoints];
+		Arrays.fill(fillRow, 0, yEnd - yStart, value);
+		for (int x = xStart; x < xEnd; x++) {
+			rowView.position(x * yPoints + yStart);
+			rowView.put(fillRow, 0, yEnd - yStart);
+		}
+	}
+	
+	public void fillIfBelow(int xStart, int yStart, int xEnd, int yEnd, byte value, byte below) {
+		for (int x = xStart; x < xEnd; x++) {
+			int row = x * yPoints;
+			for (int i = row + yStart; i < row + yEnd; i++) {
+				if (data.get(i) < below) data.put(i, value);
+			}
+		}
+	}
+	
+	public int sum(int xStart, int yStart, int xEnd, int yEnd) {
+		int total = 0;
+		for (int x = xStart; x < xEnd; x++) {
+			int row = x * yPoints;
+			for (int i = row + yStart; i < row + yEnd; i++) {
+				total += data.get(i);
+			}
+		}
+		return total;
+	}
+	
+	public void incrementBelow(byte value) {
+		for (int i = 0; i < data.capacity(); i++) {
+			byte b = data.get(i);
+			if (b < value) data.put(i, (byte) (b + 1));
+		}
+	}
+	
+	public void decrementAbove(byte value) {
+		for (int i = 0; i < data.capacity(); i++) {
+			byte b = data.get(i);
+			if (b > value) data.put(i, (byte) (b - 1));
+		}
+	}
+	
+	public void resize(int xChange, int yChange) {
+		int newYPoints = yPoints + Math.abs(yChange);
+		ByteBuffer newData = ByteBuffer.allocateDirect((xPoints + Math.abs(xChange)) * newYPoints);
+		int xOffset = xChange < 0 ? -xChange : 0;
+		int yOffset = yChange < 0 ? -yChange : 0;
+		ByteBuffer oldRow = data.duplicate();
+		for (int x = 0; x < xPoints; x++) {
+			oldRow.limit(x * yPoints + yPoints).position(x * yPoints);
+			newData.position((x + xOffset) * newYPoints + yOffset);
+			newData.put(oldRow);
+		}
+		newData.clear();
+		xPoints += Math.abs(xChange);
+		yPoints = newYPoints;
+		data = newData;
+		rowView = data.duplicate();
+	}
+	
+	// Getters, Setters
+	
+	public int getXPoints() {
+		return xPoints;
+	}
+	
+	public int getYPoints() {
+		return yPoints;
+	}
+	
+}
@@ -0,0 +1,78 @@
+package main;
+
+// Records the version at which each 8x8 tile of a ByteMap last changed, so consumers can revisit only what changed since they last looked.
+public class DirtyTiles implements ByteMapListener {
+	
+	public static final int TILE_SHIFT = 3;
+	public static final int TILE_SIZE = 1 << TILE_SHIFT;
+	
+	private final ByteMap map;
+	
+	private long version = 0;
+	// Version of the last resize, everything is treated as changed for consumers older than this.
+	private long resizeVersion = 0;
+	
+	private long[] tileVersions;
+	private int xTiles;
+	private int yTiles;
+	
+	public DirtyTiles(ByteMap map) {
+		this.map = map;
+		allocate();
+	}
+	
+	// Primary Interface Methods
+	
+	public void cellChanged(int x, int y, byte oldValue, byte newValue) {
+		tileVersions[(x >> TILE_SHIFT) * yTiles + (y >> TILE_SHIFT)] = ++version;
+	}
+	
+	public void areaChanged(int xStart, int yStart, int xEnd, int yEnd) {
+		if (xStart >= xEnd || yStart >= yEnd) return;
+		version++;
+		for (int tx = xStart >> TILE_SHIFT; tx <= (xEnd - 1) >> TILE_SHIFT; tx++) {
+			for (int ty = yStart >> TILE_SHIFT; ty <= (yEnd - 1) >> TILE_SHIFT; ty++) {
+				tileVersions[tx * yTiles + ty] = version;
+			}
+		}
+	}
+	
+	public void resized(int xChange, int yChange) {
+		resizeVersion = ++version;
+		allocate();
+	}
+	
+	// Visits each tile changed after sinceVersion as a [start, end) rectangle of map points.
+	public void forEachChangedTile(long sinceVersion, ByteMap.TileVisitor visitor) {
+		boolean all = sinceVersion < resizeVersion;
+		int xPoints = map.getXPoints();
+		int yPoints = map.getYPoints();
+		for (int tx = 0; tx < xTiles; tx++) {
+			for (int ty = 0; ty < yTiles; ty++) {
+				if (!all && tileVersions[tx * yTiles + ty] <= sinceVersion) continue;
+				int xStart = tx << TILE_SHIFT;
+				int yStart = ty << TILE_SHIFT;
+				visitor.visit(xStart, yStart, Math.min(xStart + TILE_SIZE, xPoints), Math.min(yStart + TILE_SIZE, yPoints));
+			}
+		}
+	}
+	
+	// Secondary Methods
+	
+	private void allocate() {
+		xTiles = (map.getXPoints() + TILE_SIZE - 1) >> TILE_SHIFT;
+		yTiles = (map.getYPoints() + TILE_SIZE - 1) >> TILE_SHIFT;
+		tileVersions = new long[xTiles * yTiles];
+	}
+	
+	// Getters, Setters
+	
+	public long getVersion() {
+		return version;
+	}
+	
+	public long getResizeVersion() {
+		return resizeVersion;
+	}
+	
+}
@@ -5,6 +5,7 @@ import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.image.BufferStrategy;
+import java.awt.image.BufferedImage;
 
 import javax.swing.JFrame;
 
@@ -19,6 +20,11 @@ public class Display {
 	
 	private ByteMap byteMap = null;
 	
+	// Map image, repainted only where the map changed since imageVersion.
+	private final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+	private long imageVersion = -1;
+	private long imageResizeVersion = 0;
+	
 	private final int colorRange = 40;
 	private Color[] colors = new Color[colorRange + 1];
 	
@@ -46,37 +52,54 @@ public class Display {
 		}
 	}
 	
+	// Shows the latest image. Safe to call from a render thread while the maps change, as only the image is read.
 	public void render() {
 		BufferStrategy bs = canvas.getBufferStrategy();
         if (bs == null) {
             canvas.createBufferStrategy(3);
         } else {
             Graphics g = bs.getDrawGraphics();
-            g.setColor(Color.BLACK);
-            g.fillRect(0, 0, width, height);
-            if (byteMap != null) {
-            	drawHeatMap(g);
-    		}
+            synchronized (image) {
+            	g.drawImage(image, 0, 0, null);
+            }
             bs.show();
             g.dispose();
         }
 	}
 	
-	private void drawHeatMap(Graphics g) {
-		byte[][] map = byteMap.getByteMap();
-		int divisor = 200 / colorRange;
-		for (int x = 0; x < map.length; x++) {
-			for (int y = 0; y < map[0].length; y++) {
-				g.setColor(colors[(200 - (map[x][y] + 100)) / divisor]);
-				int xPos = 5 + (((width - 10) * x) / map.length);
-				int yPos = 5 + (((height - 10) * y) / map.length);
-				g.fillRect(xPos, yPos, 36, 36);
+	// Paints points changed since the last update into the image. Called by the control stage between ticks,
+	// so the image always shows the map as it was at the end of a tick.
+	public void update() {
+		if (byteMap == null) return;
+		synchronized (image) {
+			Graphics imageGraphics = image.getGraphics();
+			if (imageResizeVersion != byteMap.getResizeVersion()) {
+				imageResizeVersion = byteMap.getResizeVersion();
+				imageVersion = -1;
+			}
+			if (imageVersion < 0) {
+				imageGraphics.setColor(Color.BLACK);
+				imageGraphics.fillRect(0, 0, width, height);
 			}
+			int xPoints = byteMap.getXPoints();
+			int yPoints = byteMap.getYPoints();
+			int divisor = 200 / colorRange;
+			imageVersion = byteMap.forEachChangedCell(imageVersion, (x, y, value) -> {
+				imageGraphics.setColor(colors[(200 - (value + 100)) / divisor]);
+				int xPos = 5 + (((width - 10) * x) / xPoints);
+				int yPos = 5 + (((height - 10) * y) / yPoints);
+				int xNext = 5 + (((width - 10) * (x + 1)) / xPoints);
+				int yNext = 5 + (((height - 10) * (y + 1)) / yPoints);
+				imageGraphics.fillRect(xPos, yPos, xNext - xPos, yNext - yPos);
+			});
+			imageGraphics.dispose();
 		}
 	}
 	
 	public void setByteMap(ByteMap byteMap) {
 		this.byteMap = byteMap;
+		imageVersion = -1;
+		imageResizeVersion = byteMap.getResizeVersion();
 	}
 	
 }
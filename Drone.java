@@ -16,6 +16,7 @@ import afrl.cmasi.TurnType;
 import afrl.cmasi.VehicleActionCommand;
 import afrl.cmasi.Waypoint;
 import afrl.cmasi.searchai.HazardZoneDetection;
+import avtas.lmcp.LMCPObject;
 
 // Author: Kevin Wang
 
@@ -40,6 +41,8 @@ public class Drone {
 	// Settings
 	private final double standOff = 0.002d;
 	private final long detectionWindow = 600;
+	// En route to a target the gimbal sweeps side to side rather than staring ahead, and the swept ground is marked searched.
+	private final boolean scanEnRoute = Boolean.parseBoolean(System.getProperty("firehack.scan", "true"));
 	
 	private long stareStartTime = 0;
 	private double targetLong = 0;
@@ -49,12 +52,24 @@ public class Drone {
 	
 	private boolean onMission = false;
 	private boolean isStaring = false;
+	private boolean isScanning = false;
+	
+	// Position at the previous state, the start of the next swath.
+	private boolean located = false;
+	private double lastLong = 0;
+	private double lastLat = 0;
 	
 	private int resIndex = 0;
 	
-	// Used in recursive path-finding method.
+	// Routes are planned over the path map, around known hazards.
 	private ByteMap map;
-	private byte[][] pathMap;
+	
+	// Parts of the mission command, rebuilt for each one sent. The client packs a command before the next tick.
+	private final MissionCommand missionCommand = new MissionCommand();
+	private final List<Waypoint> waypoints = new ArrayList<>();
+	private final GimbalStareAction stareAction = new GimbalStareAction();
+	private final Location3D starePoint = new Location3D(0, 0, 0, AltitudeType.MSL);
+	private final GimbalScanAction scanAction = new GimbalScanAction();
 
 	public Drone(Client client, MapManager mapManager, long id) {
 		this.client = client;
@@ -76,32 +91,13 @@ public class Drone {
 		}
 		
 		if (onMission && targetWithinSensorRange() && !isStaring) {
-			MissionCommand missionCommand = new MissionCommand();
-			missionCommand.setVehicleID(ID);
-			missionCommand.setStatus(CommandStatusType.Pending);
+			isScanning = false;
+			MissionCommand missionCommand = newCommand();
 			
 			int speed = 15;
-			GimbalStareAction gsa = new GimbalStareAction();
-			gsa.setPayloadID(1);
-			gsa.setDuration(1000000);
-			gsa.setStarepoint(new Location3D(targetLat, targetLong, 0, AltitudeType.MSL));
-			missionCommand.getVehicleActionList().add(gsa);
+			missionCommand.getVehicleActionList().add(stare());
 			
-			Waypoint wp = new Waypoint();
-			wp.setNumber(1);
-			wp.setLongitude(moveLong);
-			wp.setLatitude(moveLat);
-			wp.setAltitude(altitude);
-			wp.setAltitudeType(altitudeType);
-			wp.setSpeed(speed);
-			wp.setSpeedType(speedType);
-			wp.setClimbRate(climb);
-			wp.setTurnType(turnType);
-			wp.setContingencyWaypointA(1); // TODO Contingency
-	        wp.setContingencyWaypointB(1);
-			wp.setNextWaypoint(1);
-			missionCommand.getWaypointList().add(wp);
-			missionCommand.setFirstWaypoint(1);
+			addRoute(missionCommand, speed, planRoute(moveLong, moveLat));
 			
 			client.addMessage(missionCommand);
 			isStaring = true;
@@ -117,71 +113,127 @@ public class Drone {
 		}
 	}
 	
-	public void searchLocation(double longitude, double latitude, long startTime) {
-		onMission = true;
-		
+	public boolean searchLocation(double longitude, double latitude, long startTime) {
+		List<LMCPObject> messages = new ArrayList<>();
+		boolean routed = searchLocation(longitude, latitude, startTime, messages);
+		for (LMCPObject message : messages) {
+			client.addMessage(message);
+		}
+		return routed;
+	}
+	
+	// Adds the mission command to messages rather than sending it, so drones on different resolutions can be planned concurrently.
+	// Where no safe route to the target is found, nothing is sent, the drone keeps to its current route and false is returned.
+	public boolean searchLocation(double longitude, double latitude, long startTime, List<LMCPObject> messages) {
 		double angle = Math.atan2(latitude - avs.getLocation().getLatitude(), longitude - avs.getLocation().getLongitude());
 		
+		double standOffLong = longitude - (standOff * Math.cos(angle));
+		double standOffLat = latitude - (standOff * Math.sin(angle));
+		int points = planRoute(standOffLong, standOffLat);
+		if (points < 0) return false;
 		
-		moveLong = longitude - (standOff * Math.cos(angle));
-		moveLat = latitude - (standOff * Math.sin(angle));
+		onMission = true;
+		moveLong = standOffLong;
+		moveLat = standOffLat;
 		
 		targetLong = longitude;
 		targetLat = latitude;
 		
-		MissionCommand missionCommand = new MissionCommand();
-		missionCommand.setVehicleID(ID);
-		missionCommand.setStatus(CommandStatusType.Pending);
+		MissionCommand missionCommand = newCommand();
 
 		int speed = 30;
 		if (targetWithinSensorRange()) {
 			speed = 15;
-			GimbalStareAction gsa = new GimbalStareAction();
-			gsa.setPayloadID(1);
-			gsa.setDuration(1000000);
-			gsa.setStarepoint(new Location3D(targetLat, targetLong, 0, AltitudeType.MSL));
-			missionCommand.getVehicleActionList().add(gsa);
+			missionCommand.getVehicleActionList().add(stare());
 			isStaring = true;
+			isScanning = false;
 			stareStartTime = startTime;
-		} else {
-			// TEMP
-			GimbalStareAction gsa = new GimbalStareAction();
-			gsa.setPayloadID(1);
-			gsa.setDuration(1000000);
-			gsa.setStarepoint(new Location3D(targetLat, targetLong, 0, AltitudeType.MSL));
-			missionCommand.getVehicleActionList().add(gsa);
+		} else if (scanEnRoute) {
+			// Sweeps 60 degrees either side of the heading, tick() switches to a stare once the target is in range.
+			scanAction.setPayloadID(1);
+			scanAction.setAzimuthSlewRate(1000f);
+			scanAction.setStartAzimuth(300f);
+			scanAction.setEndAzimuth(60f);
+			scanAction.setStartElevation(-45f);
+			scanAction.setEndElevation(-45f);
+			scanAction.setCycles(0); // Until replaced
+			missionCommand.getVehicleActionList().add(scanAction);
 			isStaring = false;
-			/*
-			GimbalScanAction scan = new GimbalScanAction();
-			scan.setAzimuthSlewRate(1000f);
-			scan.setStartAzimuth(300f);
-			scan.setEndAzimuth(60f);
+			isScanning = true;
+		} else {
+			missionCommand.getVehicleActionList().add(stare());
 			isStaring = false;
-			*/
+			isScanning = false;
 		}
 		
-		// If not in safe zone, take direct route to safe zone.
-		Waypoint wp = new Waypoint();
-		wp.setNumber(1);
-		wp.setLongitude(moveLong);
-		wp.setLatitude(moveLat);
-		wp.setAltitude(altitude);
-		wp.setAltitudeType(altitudeType);
-		wp.setSpeed(speed);
-		wp.setSpeedType(speedType);
-		wp.setClimbRate(climb);
-		wp.setTurnType(turnType);
-		wp.setContingencyWaypointA(1);
-        wp.setContingencyWaypointB(1);
-		wp.setNextWaypoint(1);
-		missionCommand.getWaypointList().add(wp);
-		
-		missionCommand.setFirstWaypoint(1);
-		client.addMessage(missionCommand);
+		addRoute(missionCommand, speed, points);
+		messages.add(missionCommand);
+		return true;
 	}
 	
 	// Secondary Methods
 	
+	// Clears the mission command for the next one to be built in it.
+	private MissionCommand newCommand() {
+		missionCommand.getVehicleActionList().clear();
+		missionCommand.getWaypointList().clear();
+		missionCommand.setVehicleID(ID);
+		missionCommand.setStatus(CommandStatusType.Pending);
+		return missionCommand;
+	}
+	
+	// A stare at the target.
+	private GimbalStareAction stare() {
+		starePoint.setLatitude(targetLat);
+		starePoint.setLongitude(targetLong);
+		stareAction.setPayloadID(1);
+		stareAction.setDuration(1000000);
+		stareAction.setStarepoint(starePoint);
+		return stareAction;
+	}
+	
+	// Plans a route around known hazards from the drone to the point, returning its number of points or -1 if there is none.
+	private int planRoute(double longitude, double latitude) {
+		Location3D location = avs.getLocation();
+		return mapManager.getPathPlanner(resIndex).plan(map.convertLong(location.getLongitude()), map.convertLat(location.getLatitude()),
+				map.convertLong(longitude), map.convertLat(latitude));
+	}
+	
+	// Adds waypoints to the stand-off point, one at each turn of the planned route. Without a route the drone holds its position.
+	private void addRoute(MissionCommand missionCommand, int speed, int points) {
+		Location3D location = avs.getLocation();
+		int[] route = mapManager.getPathPlanner(resIndex).getRoute();
+		double endLong = points < 0 ? location.getLongitude() : moveLong;
+		double endLat = points < 0 ? location.getLatitude() : moveLat;
+		double halfX = map.getLongitude() / map.getXPoints() / 2;
+		double halfY = map.getLatitude() / map.getYPoints() / 2;
+		// The route starts at the drone's own point, and the last waypoint is the exact stand-off point rather than its centre.
+		int count = Math.max(points - 1, 1);
+		for (int i = 1; i <= count; i++) {
+			if (i > waypoints.size()) waypoints.add(new Waypoint());
+			Waypoint wp = waypoints.get(i - 1);
+			wp.setNumber(i);
+			if (i < count) {
+				wp.setLongitude(map.convertXPoint(route[2 * i]) + halfX);
+				wp.setLatitude(map.convertYPoint(route[2 * i + 1]) + halfY);
+			} else {
+				wp.setLongitude(endLong);
+				wp.setLatitude(endLat);
+			}
+			wp.setAltitude(altitude);
+			wp.setAltitudeType(altitudeType);
+			wp.setSpeed(speed);
+			wp.setSpeedType(speedType);
+			wp.setClimbRate(climb);
+			wp.setTurnType(turnType);
+			wp.setContingencyWaypointA(1); // TODO Contingency
+			wp.setContingencyWaypointB(1);
+			wp.setNextWaypoint(Math.min(i + 1, count));
+			missionCommand.getWaypointList().add(wp);
+		}
+		missionCommand.setFirstWaypoint(1);
+	}
+	
 	public boolean passedDetectionWindow(long time) {
 		if (time - stareStartTime > detectionWindow) {
 			return true;
@@ -204,6 +256,7 @@ public class Drone {
 	
 	public void endMission() {
 		onMission = false;
+		isScanning = false;
 	}
 	
 	
@@ -230,8 +283,17 @@ public class Drone {
 		// TODO Reset search nodes
 	}
 	
+	// While scanning, the ground swept since the previous state is marked searched.
 	public void setAVS(AirVehicleState avs) {
 		this.avs = avs;
+		Location3D location = avs.getLocation();
+		if (location == null) return;
+		if (isScanning && located) {
+			mapManager.setSafeSwath(lastLong, lastLat, location.getLongitude(), location.getLatitude(), resIndex);
+		}
+		located = true;
+		lastLong = location.getLongitude();
+		lastLat = location.getLatitude();
 	}
 	
 	public void setAVC(AirVehicleConfiguration avc) {
@@ -0,0 +1,99 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import afrl.cmasi.AirVehicleState;
+import afrl.cmasi.Location3D;
+
+// Drones by ID, with their latest position held in packed arrays indexed the same as the drones.
+// Lookups go through a primitive hash map rather than a search of the list, and scoring loops read the arrays directly.
+public class DroneRegistry {
+	
+	private final LongIntMap indexes = new LongIntMap(16);
+	private final List<Drone> drones = new ArrayList<>();
+	private final List<Drone> dronesView = Collections.unmodifiableList(drones);
+	
+	private double[] longitudes = new double[8];
+	private double[] latitudes = new double[8];
+	private double[] altitudes = new double[8];
+	private double[] headings = new double[8];
+	private boolean[] located = new boolean[8];
+	
+	// Primary Interface Methods
+	
+	// Adds a drone and returns its index, which stays the same for the life of the registry.
+	public int add(Drone drone) {
+		int index = drones.size();
+		if (index == longitudes.length) {
+			int capacity = index * 2;
+			longitudes = Arrays.copyOf(longitudes, capacity);
+			latitudes = Arrays.copyOf(latitudes, capacity);
+			altitudes = Arrays.copyOf(altitudes, capacity);
+			headings = Arrays.copyOf(headings, capacity);
+			located = Arrays.copyOf(located, capacity);
+		}
+		drones.add(drone);
+		indexes.put(drone.id(), index);
+		return index;
+	}
+	
+	// Hands the state to the drone and copies its position into the arrays.
+	public void setState(int index, AirVehicleState avs) {
+		drones.get(index).setAVS(avs);
+		Location3D location = avs.getLocation();
+		located[index] = location != null;
+		if (location != null) {
+			longitudes[index] = location.getLongitude();
+			latitudes[index] = location.getLatitude();
+			altitudes[index] = location.getAltitude();
+		}
+		headings[index] = avs.getHeading();
+	}
+	
+	public int indexOf(long id) {
+		return indexes.get(id, -1);
+	}
+	
+	public Drone get(long id) {
+		int index = indexes.get(id, -1);
+		return index < 0 ? null : drones.get(index);
+	}
+	
+	// Getters, Setters
+	
+	public Drone getDrone(int index) {
+		return drones.get(index);
+	}
+	
+	public List<Drone> getDrones() {
+		return dronesView;
+	}
+	
+	public int size() {
+		return drones.size();
+	}
+	
+	public boolean isLocated(int index) {
+		return located[index];
+	}
+	
+	public double getLongitude(int index) {
+		return longitudes[index];
+	}
+	
+	public double getLatitude(int index) {
+		return latitudes[index];
+	}
+	
+	public double getAltitude(int index) {
+		return altitudes[index];
+	}
+	
+	public double getHeading(int index) {
+		return headings[index];
+	}
+	
+}
@@ -0,0 +1,361 @@
+package main;
+
+import java.util.Arrays;
+
+// Connected components of the hazard points of a map, four-connected to match HazardContours.
+// Points becoming hazards are joined to their neighbours as the map changes, by union-find. Removing a hazard point can
+// split a component, so the next query relabels the box holding every component that lost points, grown until no component
+// crosses its edge. A resize, or more removals than are kept between queries, marks the whole labelling stale instead.
+// Each component has a label that is kept across merges, splits and rebuilds where possible, to track a zone over time.
+// The live components are also kept in a list, each with its point sums and bounding box, so their centroids and extents
+// are read in O(1) apiece.
+public class HazardComponents implements ByteMapListener {
+	
+	private final ByteMap map;
+	private final byte hazardValue;
+	
+	// Points indexed x * yPoints + y. Parent is -1 for points that are not hazards, roots are their own parent.
+	private int xPoints;
+	private int yPoints;
+	private int xOffset;
+	private int yOffset;
+	private int[] parents = new int[0];
+	private int[] sizes = new int[0];
+	private int[] labels = new int[0];
+	// Per root, the sums of its points' coordinates and its bounding box, inclusive.
+	private long[] xSums = new long[0];
+	private long[] ySums = new long[0];
+	private int[] xMins = new int[0];
+	private int[] yMins = new int[0];
+	private int[] xMaxs = new int[0];
+	private int[] yMaxs = new int[0];
+	// Roots of the live components in [0, components), and the index of each root in it.
+	private int[] roots = new int[0];
+	private int[] rootIndexes = new int[0];
+	private int components = 0;
+	private int nextLabel = 0;
+	private boolean stale = true;
+	// Points that stopped being hazards since the last query. They stay linked into their components until those are relabelled.
+	private final int[] removed = new int[64];
+	private int removedCount = 0;
+	
+	// The labelling before the last rebuild, reused for the next one, and the old labels already carried over.
+	private int[] oldParents = new int[0];
+	private int[] oldLabels = new int[0];
+	private final LongIntMap taken = new LongIntMap(64);
+	// Labels of the points in a relabelled box, before it is relabelled.
+	private int[] boxLabels = new int[0];
+	
+	public HazardComponents(ByteMap map, byte hazardValue) {
+		this.map = map;
+		this.hazardValue = hazardValue;
+		map.addListener(this);
+	}
+	
+	// Primary Interface Methods
+	
+	// Label of the component holding a point, or -1 if it is not a hazard.
+	public int componentOf(int x, int y) {
+		update();
+		if (x < 0 || y < 0 || x >= xPoints || y >= yPoints) return -1;
+		int point = x * yPoints + y;
+		if (parents[point] < 0) return -1;
+		return labels[find(point)];
+	}
+	
+	// Number of points in the component holding a point, or 0 if it is not a hazard.
+	public int sizeOf(int x, int y) {
+		update();
+		if (x < 0 || y < 0 || x >= xPoints || y >= yPoints) return 0;
+		int point = x * yPoints + y;
+		if (parents[point] < 0) return 0;
+		return sizes[find(point)];
+	}
+	
+	public void cellChanged(int x, int y, byte oldValue, byte newValue) {
+		if (stale || (oldValue == hazardValue) == (newValue == hazardValue)) return;
+		changed(x * yPoints + y, x, y, newValue == hazardValue);
+	}
+	
+	public void areaChanged(int xStart, int yStart, int xEnd, int yEnd) {
+		if (stale) return;
+		for (int x = xStart; x < xEnd; x++) {
+			for (int y = yStart; y < yEnd; y++) {
+				changed(x * yPoints + y, x, y, map.store.get(x, y) == hazardValue);
+				if (stale) return;
+			}
+		}
+	}
+	
+	public void resized(int xChange, int yChange) {
+		stale = true;
+	}
+	
+	// Secondary Methods
+	
+	private void update() {
+		if (stale) {
+			rebuild();
+		} else if (removedCount > 0) {
+			relabel();
+		}
+	}
+	
+	// A point still linked into a component is left there, as a removed point that became a hazard again is rejoined
+	// when its component is relabelled.
+	private void changed(int point, int x, int y, boolean hazard) {
+		if (hazard) {
+			if (parents[point] < 0) add(point, x, y, nextLabel++);
+		} else if (parents[point] >= 0) {
+			if (removedCount == removed.length) {
+				stale = true;
+			} else {
+				removed[removedCount++] = point;
+			}
+		}
+	}
+	
+	private void add(int point, int x, int y, int label) {
+		parents[point] = point;
+		sizes[point] = 1;
+		labels[point] = label;
+		xSums[point] = x;
+		ySums[point] = y;
+		xMins[point] = xMaxs[point] = x;
+		yMins[point] = yMaxs[point] = y;
+		rootIndexes[point] = components;
+		roots[components++] = point;
+		if (x > 0) union(point, point - yPoints);
+		if (x < xPoints - 1) union(point, point + yPoints);
+		if (y > 0) union(point, point - 1);
+		if (y < yPoints - 1) union(point, point + 1);
+	}
+	
+	// Joins the components of two points if both are hazards. The larger keeps its root, b on a tie, and the older label is kept.
+	private void union(int a, int b) {
+		if (parents[b] < 0) return;
+		a = find(a);
+		b = find(b);
+		if (a == b) return;
+		if (sizes[a] <= sizes[b]) {
+			int swap = a;
+			a = b;
+			b = swap;
+		}
+		parents[b] = a;
+		sizes[a] += sizes[b];
+		labels[a] = Math.min(labels[a], labels[b]);
+		xSums[a] += xSums[b];
+		ySums[a] += ySums[b];
+		xMins[a] = Math.min(xMins[a], xMins[b]);
+		yMins[a] = Math.min(yMins[a], yMins[b]);
+		xMaxs[a] = Math.max(xMaxs[a], xMaxs[b]);
+		yMaxs[a] = Math.max(yMaxs[a], yMaxs[b]);
+		// The last root takes b's place in the list.
+		int last = roots[--components];
+		roots[rootIndexes[b]] = last;
+		rootIndexes[last] = rootIndexes[b];
+	}
+	
+	private int find(int point) {
+		while (parents[point] != point) {
+			parents[point] = parents[parents[point]];
+			point = parents[point];
+		}
+		return point;
+	}
+	
+	// Relabels from scratch. A new component takes the first label, in point order, of the old components it overlaps
+	// that no other new component has taken.
+	private void rebuild() {
+		int[] spareParents = oldParents;
+		int[] spareLabels = oldLabels;
+		oldParents = parents;
+		oldLabels = labels;
+		int oldYPoints = yPoints;
+		int oldXPoints = xPoints;
+		int xShift = map.getXOffset() - xOffset;
+		int yShift = map.getYOffset() - yOffset;
+		
+		xPoints = map.getXPoints();
+		yPoints = map.getYPoints();
+		xOffset = map.getXOffset();
+		yOffset = map.getYOffset();
+		int size = xPoints * yPoints;
+		if (spareParents.length < size) {
+			int capacity = Math.max(size, spareParents.length * 2);
+			spareParents = new int[capacity];
+			spareLabels = new int[capacity];
+		}
+		if (sizes.length < size) {
+			int capacity = spareParents.length;
+			sizes = new int[capacity];
+			xSums = new long[capacity];
+			ySums = new long[capacity];
+			xMins = new int[capacity];
+			yMins = new int[capacity];
+			xMaxs = new int[capacity];
+			yMaxs = new int[capacity];
+			roots = new int[capacity];
+			rootIndexes = new int[capacity];
+		}
+		parents = spareParents;
+		labels = spareLabels;
+		Arrays.fill(parents, 0, size, -1);
+		components = 0;
+		for (int x = 0; x < xPoints; x++) {
+			for (int y = 0; y < yPoints; y++) {
+				if (map.getValue(x, y) == hazardValue) add(x * yPoints + y, x, y, -1);
+			}
+		}
+		
+		taken.clear();
+		for (int x = 0; x < xPoints; x++) {
+			int oldX = x - xShift;
+			if (oldX < 0 || oldX >= oldXPoints) continue;
+			for (int y = 0; y < yPoints; y++) {
+				int oldY = y - yShift;
+				int point = x * yPoints + y;
+				if (oldY < 0 || oldY >= oldYPoints || parents[point] < 0) continue;
+				int oldPoint = oldX * oldYPoints + oldY;
+				if (oldParents[oldPoint] < 0) continue;
+				int oldLabel = oldLabels[findIn(oldParents, oldPoint)];
+				int root = find(point);
+				if (labels[root] < 0 && !taken.containsKey(oldLabel)) {
+					labels[root] = oldLabel;
+					taken.put(oldLabel, root);
+				}
+			}
+		}
+		for (int i = 0; i < components; i++) {
+			if (labels[roots[i]] < 0) labels[roots[i]] = nextLabel++;
+		}
+		stale = false;
+		removedCount = 0;
+	}
+	
+	// Relabels the components that lost points. Their bounding boxes are joined, then grown by the box of any component on
+	// the edge, as one reaching outside must cross it. Every component met is then wholly inside and nothing outside touches
+	// one, so the box is cleared and its hazards added again. A new component takes the first label, in point order,
+	// of the old components it overlaps that no other new component has taken.
+	private void relabel() {
+		int root = find(removed[0]);
+		int xStart = xMins[root], yStart = yMins[root], xEnd = xMaxs[root], yEnd = yMaxs[root];
+		for (int i = 1; i < removedCount; i++) {
+			root = find(removed[i]);
+			xStart = Math.min(xStart, xMins[root]);
+			yStart = Math.min(yStart, yMins[root]);
+			xEnd = Math.max(xEnd, xMaxs[root]);
+			yEnd = Math.max(yEnd, yMaxs[root]);
+		}
+		removedCount = 0;
+		boolean grown = true;
+		while (grown) {
+			grown = false;
+			for (int x = xStart; x <= xEnd; x++) {
+				for (int y = yStart; y <= yEnd; y += x == xStart || x == xEnd ? 1 : Math.max(yEnd - yStart, 1)) {
+					int point = x * yPoints + y;
+					if (parents[point] < 0) continue;
+					root = find(point);
+					if (xMins[root] < xStart || yMins[root] < yStart || xMaxs[root] > xEnd || yMaxs[root] > yEnd) {
+						xStart = Math.min(xStart, xMins[root]);
+						yStart = Math.min(yStart, yMins[root]);
+						xEnd = Math.max(xEnd, xMaxs[root]);
+						yEnd = Math.max(yEnd, yMaxs[root]);
+						grown = true;
+					}
+				}
+			}
+		}
+		
+		int boxHeight = yEnd - yStart + 1;
+		int area = (xEnd - xStart + 1) * boxHeight;
+		if (boxLabels.length < area) boxLabels = new int[Math.max(area, boxLabels.length * 2)];
+		for (int x = xStart; x <= xEnd; x++) {
+			for (int y = yStart; y <= yEnd; y++) {
+				int point = x * yPoints + y;
+				boxLabels[(x - xStart) * boxHeight + y - yStart] = parents[point] < 0 ? -1 : labels[find(point)];
+			}
+		}
+		// Roots leave the list before any point is cleared, as clearing breaks the paths to them.
+		for (int x = xStart; x <= xEnd; x++) {
+			for (int y = yStart; y <= yEnd; y++) {
+				int point = x * yPoints + y;
+				if (parents[point] != point) continue;
+				int last = roots[--components];
+				roots[rootIndexes[point]] = last;
+				rootIndexes[last] = rootIndexes[point];
+			}
+		}
+		for (int x = xStart; x <= xEnd; x++) {
+			Arrays.fill(parents, x * yPoints + yStart, x * yPoints + yEnd + 1, -1);
+		}
+		for (int x = xStart; x <= xEnd; x++) {
+			for (int y = yStart; y <= yEnd; y++) {
+				if (map.getValue(x, y) == hazardValue) add(x * yPoints + y, x, y, -1);
+			}
+		}
+		
+		taken.clear();
+		for (int x = xStart; x <= xEnd; x++) {
+			for (int y = yStart; y <= yEnd; y++) {
+				int point = x * yPoints + y;
+				int oldLabel = boxLabels[(x - xStart) * boxHeight + y - yStart];
+				if (oldLabel < 0 || parents[point] < 0) continue;
+				root = find(point);
+				if (labels[root] < 0 && !taken.containsKey(oldLabel)) {
+					labels[root] = oldLabel;
+					taken.put(oldLabel, root);
+				}
+			}
+		}
+		for (int x = xStart; x <= xEnd; x++) {
+			for (int y = yStart; y <= yEnd; y++) {
+				int point = x * yPoints + y;
+				if (parents[point] == point && labels[point] < 0) labels[point] = nextLabel++;
+			}
+		}
+	}
+	
+	private static int findIn(int[] parents, int point) {
+		while (parents[point] != point) {
+			point = parents[point];
+		}
+		return point;
+	}
+	
+	// Getters, Setters
+	
+	// Live components are indexed from 0 to the count. Indexes are valid until the map next changes.
+	public int getComponentCount() {
+		update();
+		return components;
+	}
+	
+	public int getLabel(int component) {
+		return labels[roots[component]];
+	}
+	
+	// Mean point coordinates of a component.
+	public double getCentroidX(int component) {
+		int root = roots[component];
+		return (double) xSums[root] / sizes[root];
+	}
+	
+	public double getCentroidY(int component) {
+		int root = roots[component];
+		return (double) ySums[root] / sizes[root];
+	}
+	
+	// Points spanned by a component's bounding box.
+	public int getWidth(int component) {
+		int root = roots[component];
+		return xMaxs[root] - xMins[root] + 1;
+	}
+	
+	public int getHeight(int component) {
+		int root = roots[component];
+		return yMaxs[root] - yMins[root] + 1;
+	}
+	
+}
@@ -0,0 +1,238 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Boundary loops of the hazard points of a map, traced by marching squares and kept between updates.
+// Each square joins four neighbouring points, and squares run one past every edge so loops always close.
+// An update recomputes only squares in tiles changed since the last one, and re-traces only loops passing through them.
+// Loop vertices are edge midpoints in doubled point coordinates, so point (x, y) is at (2x, 2y).
+// Loops run with the hazard on their left, so outer boundaries are anticlockwise and holes clockwise in point coordinates.
+public class HazardContours {
+	
+	// Edges of a square with corner k at (x, y), (x + 1, y), (x + 1, y + 1), (x, y + 1). Edge k joins corner k and corner k + 1.
+	private static final int[] EDGE_X = {1, 2, 1, 0};
+	private static final int[] EDGE_Y = {0, 1, 2, 1};
+	private static final int[] CORNER_X = {0, 1, 1, 0};
+	private static final int[] CORNER_Y = {0, 0, 1, 1};
+	// Edge pairs of up to two segments per case. Where hazard corners are diagonal each is cut off alone.
+	private static final int[][] SEGMENTS = new int[16][];
+	
+	static {
+		for (int squareCase = 0; squareCase < 16; squareCase++) {
+			if (squareCase == 5 || squareCase == 10) {
+				int corner = squareCase == 5 ? 0 : 1;
+				SEGMENTS[squareCase] = new int[] {(corner + 3) & 3, corner, (corner + 1) & 3, (corner + 2) & 3};
+				continue;
+			}
+			int[] edges = new int[2];
+			int found = 0;
+			for (int edge = 0; edge < 4; edge++) {
+				if (((squareCase >> edge) & 1) != ((squareCase >> ((edge + 1) & 3)) & 1)) edges[found++] = edge;
+			}
+			SEGMENTS[squareCase] = found == 0 ? new int[0] : edges;
+		}
+	}
+	
+	private final ByteMap map;
+	private final byte hazardValue;
+	
+	private long version = -1;
+	private long resizeVersion = -1;
+	
+	// Squares are indexed (x + 1) * squaresY + (y + 1) for x from -1 to xPoints - 1.
+	private int squaresY;
+	private byte[] cases = new byte[0];
+	// Loop through each segment slot, square * 2 + segment, or -1.
+	private int[] slotLoops = new int[0];
+	
+	// Loops by id. Each keeps its vertices, x then y, and the slots it passes through, in arrays reused when the id is.
+	// The number of vertices is kept apart, -1 where the id is free.
+	private final List<int[]> loopVertices = new ArrayList<>();
+	private final List<int[]> loopSlots = new ArrayList<>();
+	private int[] loopLengths = new int[16];
+	private int[] freeLoops = new int[16];
+	private int freeCount = 0;
+	
+	// Scratch
+	private int[] seeds = new int[64];
+	private int seedCount = 0;
+	private int[] traceVertices = new int[64];
+	private int[] traceSlots = new int[32];
+	private final ByteMap.TileVisitor changedTile = this::changedTile;
+	
+	public HazardContours(ByteMap map, byte hazardValue) {
+		this.map = map;
+		this.hazardValue = hazardValue;
+	}
+	
+	// Primary Interface Methods
+	
+	// Brings the loops up to date with the map.
+	public void update() {
+		if (resizeVersion != map.getResizeVersion()) {
+			resizeVersion = map.getResizeVersion();
+			version = -1;
+			reset();
+		}
+		seedCount = 0;
+		version = map.forEachChangedTile(version, changedTile);
+		for (int i = 0; i < seedCount; i++) {
+			int square = seeds[i];
+			int segments = SEGMENTS[cases[square]].length / 2;
+			for (int segment = 0; segment < segments; segment++) {
+				if (slotLoops[square * 2 + segment] < 0) trace(square, segment);
+			}
+		}
+	}
+	
+	// Secondary Methods
+	
+	// Recomputes the squares with a corner in the tile, freeing the loops through those that changed.
+	private void changedTile(int xStart, int yStart, int xEnd, int yEnd) {
+		int xPoints = map.getXPoints();
+		for (int x = xStart - 1; x < Math.min(xEnd, xPoints); x++) {
+			for (int y = yStart - 1; y < Math.min(yEnd, squaresY - 1); y++) {
+				int square = (x + 1) * squaresY + (y + 1);
+				byte squareCase = computeCase(x, y);
+				if (squareCase == cases[square]) continue;
+				removeLoop(slotLoops[square * 2]);
+				removeLoop(slotLoops[square * 2 + 1]);
+				cases[square] = squareCase;
+				addSeed(square);
+			}
+		}
+	}
+	
+	private void reset() {
+		squaresY = map.getYPoints() + 1;
+		int squares = (map.getXPoints() + 1) * squaresY;
+		if (cases.length < squares) {
+			cases = new byte[squares];
+			slotLoops = new int[squares * 2];
+		}
+		Arrays.fill(cases, (byte) 0);
+		Arrays.fill(slotLoops, -1);
+		loopVertices.clear();
+		loopSlots.clear();
+		freeCount = 0;
+	}
+	
+	private byte computeCase(int x, int y) {
+		int squareCase = 0;
+		for (int corner = 0; corner < 4; corner++) {
+			if (isHazard(x + CORNER_X[corner], y + CORNER_Y[corner])) squareCase |= 1 << corner;
+		}
+		return (byte) squareCase;
+	}
+	
+	private boolean isHazard(int x, int y) {
+		if (x < 0 || y < 0 || x >= map.getXPoints() || y >= map.getYPoints()) return false;
+		return map.getValue(x, y) == hazardValue;
+	}
+	
+	// Frees a loop, leaving its squares to be traced again.
+	private void removeLoop(int loop) {
+		if (loop < 0) return;
+		int[] slots = loopSlots.get(loop);
+		for (int i = 0; i < loopLengths[loop]; i++) {
+			slotLoops[slots[i]] = -1;
+			addSeed(slots[i] >> 1);
+		}
+		loopLengths[loop] = -1;
+		if (freeCount == freeLoops.length) freeLoops = Arrays.copyOf(freeLoops, freeCount * 2);
+		freeLoops[freeCount++] = loop;
+	}
+	
+	private void addSeed(int square) {
+		if (seedCount == seeds.length) seeds = Arrays.copyOf(seeds, seedCount * 2);
+		seeds[seedCount++] = square;
+	}
+	
+	private void trace(int startSquare, int startSegment) {
+		int[] startEdges = SEGMENTS[cases[startSquare]];
+		int entry = startEdges[startSegment * 2];
+		int exit = startEdges[startSegment * 2 + 1];
+		// Turn round if the hazard corner of the entry edge would be on the right.
+		int sx = startSquare / squaresY - 1;
+		int sy = startSquare % squaresY - 1;
+		int hazardCorner = ((cases[startSquare] >> entry) & 1) != 0 ? entry : (entry + 1) & 3;
+		long entryX = EDGE_X[entry], entryY = EDGE_Y[entry];
+		long cross = (EDGE_X[exit] - entryX) * (2 * CORNER_Y[hazardCorner] - entryY) - (EDGE_Y[exit] - entryY) * (2 * CORNER_X[hazardCorner] - entryX);
+		if (cross < 0) {
+			int swap = entry;
+			entry = exit;
+			exit = swap;
+		}
+		
+		int loop = freeCount == 0 ? loopVertices.size() : freeLoops[--freeCount];
+		int length = 0;
+		int square = startSquare;
+		int segment = startSegment;
+		do {
+			if (length == traceSlots.length) {
+				traceSlots = Arrays.copyOf(traceSlots, length * 2);
+				traceVertices = Arrays.copyOf(traceVertices, length * 4);
+			}
+			int slot = square * 2 + segment;
+			slotLoops[slot] = loop;
+			traceSlots[length] = slot;
+			traceVertices[length * 2] = 2 * sx + EDGE_X[entry];
+			traceVertices[length * 2 + 1] = 2 * sy + EDGE_Y[entry];
+			length++;
+			
+			// Step across the exit edge into the neighbouring square, entering by its opposite edge.
+			if (exit == 0) sy--;
+			else if (exit == 1) sx++;
+			else if (exit == 2) sy++;
+			else sx--;
+			entry = (exit + 2) & 3;
+			square = (sx + 1) * squaresY + (sy + 1);
+			int[] edges = SEGMENTS[cases[square]];
+			segment = edges[0] == entry || edges[1] == entry ? 0 : 1;
+			exit = edges[segment * 2] == entry ? edges[segment * 2 + 1] : edges[segment * 2];
+		} while (square != startSquare || segment != startSegment);
+		
+		if (loop == loopVertices.size()) {
+			loopVertices.add(new int[length * 2]);
+			loopSlots.add(new int[length]);
+			if (loop == loopLengths.length) loopLengths = Arrays.copyOf(loopLengths, loop * 2);
+		} else if (loopSlots.get(loop).length < length) {
+			loopVertices.set(loop, new int[length * 2]);
+			loopSlots.set(loop, new int[length]);
+		}
+		System.arraycopy(traceVertices, 0, loopVertices.get(loop), 0, length * 2);
+		System.arraycopy(traceSlots, 0, loopSlots.get(loop), 0, length);
+		loopLengths[loop] = length;
+	}
+	
+	// Getters, Setters
+	
+	// Loop ids run below this, some may be free.
+	public int getLoopCapacity() {
+		return loopVertices.size();
+	}
+	
+	// Vertices of a loop, x then y in doubled point coordinates, or null for a free id. Must not be modified.
+	// The array may run past the loop's getLoopLength() vertices, and is reused once the loop is re-traced.
+	public int[] getLoop(int loop) {
+		return loopLengths[loop] < 0 ? null : loopVertices.get(loop);
+	}
+	
+	public int getLoopLength(int loop) {
+		return loopLengths[loop];
+	}
+	
+	// Whether a loop bounds a hazard area from outside, rather than a hole in one.
+	public boolean isOuter(int loop) {
+		int[] vertices = loopVertices.get(loop);
+		int end = loopLengths[loop] * 2;
+		long area = 0;
+		for (int i = 0, j = end - 2; i < end; j = i, i += 2) {
+			area += (long) vertices[j] * vertices[i + 1] - (long) vertices[i] * vertices[j + 1];
+		}
+		return area > 0;
+	}
+	
+}
@@ -0,0 +1,279 @@
+package main;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+// Distance from each point of a search map to the nearest point holding a heat map hazard, out to RADIUS points.
+// Kept up to date from heat map changes by dynamic brushfire: a new hazard spreads lower distances outward, and a removed
+// one clears the points it was nearest to and refills them from their neighbours. No change rescans the map, and a resize
+// shifts the field into the grown map rather than rebuilding it.
+// Points near hazards are given a faster decay rate, so their attention recovers sooner after a search. Rates are kept
+// by the search map per point, so they carry across a resize.
+public class HazardDistanceField implements ByteMapListener {
+	
+	public static final double RADIUS = 3;
+	private static final float FAR = Float.POSITIVE_INFINITY;
+	
+	private final ByteMap heatMap;
+	private final ByteMap searchMap;
+	private final byte hazardValue;
+	
+	// Heat map hazards, indexed x * yPoints + y of the heat map.
+	private final BitSet heatHazards = new BitSet();
+	private int heatYPoints;
+	
+	// Search map points, indexed x * yPoints + y of the search map.
+	private int xPoints;
+	private int yPoints;
+	private int[] sourceCounts = new int[0];
+	private float[] distances = new float[0];
+	private int[] nearest = new int[0];
+	// Set until the field is first built.
+	private boolean stale = true;
+	
+	// Scratch
+	private int[] queue = new int[64];
+	private int[] cleared = new int[64];
+	
+	public HazardDistanceField(ByteMap heatMap, ByteMap searchMap, byte hazardValue) {
+		this.heatMap = heatMap;
+		this.searchMap = searchMap;
+		this.hazardValue = hazardValue;
+		heatMap.addListener(this);
+		// Only the search map's size matters, its values are left to the caller.
+		searchMap.addListener(new ByteMapListener() {
+			public void cellChanged(int x, int y, byte oldValue, byte newValue) {}
+			public void areaChanged(int xStart, int yStart, int xEnd, int yEnd) {}
+			public void resized(int xChange, int yChange) {
+				if (!stale) shiftPoints(xChange, yChange);
+			}
+		});
+	}
+	
+	// Primary Interface Methods
+	
+	// Builds the field on first use. Otherwise O(1).
+	public void refresh() {
+		if (stale) rebuild();
+	}
+	
+	public void cellChanged(int x, int y, byte oldValue, byte newValue) {
+		if (stale || (oldValue == hazardValue) == (newValue == hazardValue)) return;
+		setHeatHazard(x, y, newValue == hazardValue);
+	}
+	
+	public void areaChanged(int xStart, int yStart, int xEnd, int yEnd) {
+		if (stale) return;
+		for (int x = xStart; x < xEnd; x++) {
+			for (int y = yStart; y < yEnd; y++) {
+				setHeatHazard(x, y, heatMap.getValue(x, y) == hazardValue);
+			}
+		}
+	}
+	
+	// Heat map hazards keep their place on the ground, so only their indexes move. Each moves to a higher index,
+	// so working down from the last leaves the ones still to move untouched.
+	public void resized(int xChange, int yChange) {
+		if (stale) return;
+		int oldYPoints = heatYPoints;
+		heatYPoints = heatMap.getYPoints();
+		int xShift = Math.max(-xChange, 0);
+		int yShift = Math.max(-yChange, 0);
+		for (int point = heatHazards.length() - 1; point >= 0; point = heatHazards.previousSetBit(point - 1)) {
+			heatHazards.clear(point);
+			heatHazards.set((point / oldYPoints + xShift) * heatYPoints + point % oldYPoints + yShift);
+		}
+	}
+	
+	// Secondary Methods
+	
+	private void rebuild() {
+		xPoints = searchMap.getXPoints();
+		yPoints = searchMap.getYPoints();
+		int size = xPoints * yPoints;
+		sourceCounts = new int[size];
+		distances = new float[size];
+		nearest = new int[size];
+		Arrays.fill(distances, FAR);
+		Arrays.fill(nearest, -1);
+		for (int x = 0; x < xPoints; x++) {
+			for (int y = 0; y < yPoints; y++) {
+				searchMap.setDecayRate(x, y, 1);
+			}
+		}
+		heatHazards.clear();
+		heatYPoints = heatMap.getYPoints();
+		stale = false;
+		for (int x = 0; x < heatMap.getXPoints(); x++) {
+			for (int y = 0; y < heatYPoints; y++) {
+				if (heatMap.getValue(x, y) == hazardValue) setHeatHazard(x, y, true);
+			}
+		}
+	}
+	
+	// Moves every search map point to its place in the grown map, clears the new points, then spreads the sources near
+	// the old edges into them. Working down from the last point, as each moves to a higher index.
+	private void shiftPoints(int xChange, int yChange) {
+		int oldXPoints = xPoints;
+		int oldYPoints = yPoints;
+		xPoints = searchMap.getXPoints();
+		yPoints = searchMap.getYPoints();
+		int xShift = Math.max(-xChange, 0);
+		int yShift = Math.max(-yChange, 0);
+		int size = xPoints * yPoints;
+		int[] newCounts = sourceCounts;
+		float[] newDistances = distances;
+		int[] newNearest = nearest;
+		if (sourceCounts.length < size) {
+			int capacity = Math.max(size, sourceCounts.length * 2);
+			newCounts = new int[capacity];
+			newDistances = new float[capacity];
+			newNearest = new int[capacity];
+		}
+		for (int x = oldXPoints - 1; x >= 0; x--) {
+			for (int y = oldYPoints - 1; y >= 0; y--) {
+				int from = x * oldYPoints + y;
+				int to = (x + xShift) * yPoints + y + yShift;
+				int source = nearest[from];
+				newCounts[to] = sourceCounts[from];
+				newDistances[to] = distances[from];
+				newNearest[to] = source < 0 ? -1 : (source / oldYPoints + xShift) * yPoints + source % oldYPoints + yShift;
+			}
+		}
+		sourceCounts = newCounts;
+		distances = newDistances;
+		nearest = newNearest;
+		for (int x = 0; x < xPoints; x++) {
+			int column = x * yPoints;
+			if (x < xShift || x >= oldXPoints + xShift) {
+				clearPoints(column, column + yPoints);
+			} else {
+				clearPoints(column, column + yShift);
+				clearPoints(column + yShift + oldYPoints, column + yPoints);
+			}
+		}
+		
+		int queued = 0;
+		int xLast = oldXPoints + xShift - 1;
+		int yLast = oldYPoints + yShift - 1;
+		if (xChange != 0) {
+			int x = xChange < 0 ? xShift : xLast;
+			queued = queueSources(x, x, yShift, yLast, queued);
+		}
+		if (yChange != 0) {
+			int y = yChange < 0 ? yShift : yLast;
+			queued = queueSources(xShift, xLast, y, y, queued);
+		}
+		spread(queued);
+	}
+	
+	// Queues the points in the inclusive range that have a source, returning the new queue length.
+	private int queueSources(int xFrom, int xTo, int yFrom, int yTo, int queued) {
+		for (int x = xFrom; x <= xTo; x++) {
+			for (int y = yFrom; y <= yTo; y++) {
+				int point = x * yPoints + y;
+				if (nearest[point] < 0) continue;
+				if (queued == queue.length) queue = Arrays.copyOf(queue, queued * 2);
+				queue[queued++] = point;
+			}
+		}
+		return queued;
+	}
+	
+	private void clearPoints(int from, int to) {
+		Arrays.fill(sourceCounts, from, to, 0);
+		Arrays.fill(distances, from, to, FAR);
+		Arrays.fill(nearest, from, to, -1);
+	}
+	
+	private void setHeatHazard(int x, int y, boolean hazard) {
+		int heatPoint = x * heatYPoints + y;
+		if (heatHazards.get(heatPoint) == hazard) return;
+		heatHazards.set(heatPoint, hazard);
+		// The search map point covering the centre of the heat map point.
+		double longitude = heatMap.convertXPoint(x + 0.5);
+		double latitude = heatMap.convertYPoint(y + 0.5);
+		int sx = searchMap.assureRangeX(searchMap.convertLong(longitude));
+		int sy = searchMap.assureRangeY(searchMap.convertLat(latitude));
+		int point = sx * yPoints + sy;
+		if (hazard) {
+			if (sourceCounts[point]++ == 0) addSource(point);
+		} else {
+			if (--sourceCounts[point] == 0) removeSource(point);
+		}
+	}
+	
+	private void addSource(int point) {
+		distances[point] = 0;
+		nearest[point] = point;
+		updateRate(point);
+		queue[0] = point;
+		spread(1);
+	}
+	
+	// Clears every point this source was nearest to, then refills them from the surrounding points that kept a source.
+	private void removeSource(int source) {
+		int clearedCount = 0;
+		cleared[clearedCount++] = source;
+		nearest[source] = -1;
+		distances[source] = FAR;
+		for (int i = 0; i < clearedCount; i++) {
+			int point = cleared[i];
+			int x = point / yPoints, y = point % yPoints;
+			for (int nx = Math.max(x - 1, 0); nx <= Math.min(x + 1, xPoints - 1); nx++) {
+				for (int ny = Math.max(y - 1, 0); ny <= Math.min(y + 1, yPoints - 1); ny++) {
+					int neighbour = nx * yPoints + ny;
+					if (nearest[neighbour] != source) continue;
+					nearest[neighbour] = -1;
+					distances[neighbour] = FAR;
+					if (clearedCount == cleared.length) cleared = Arrays.copyOf(cleared, clearedCount * 2);
+					cleared[clearedCount++] = neighbour;
+				}
+			}
+		}
+		int queued = 0;
+		for (int i = 0; i < clearedCount; i++) {
+			int point = cleared[i];
+			updateRate(point);
+			int x = point / yPoints, y = point % yPoints;
+			for (int nx = Math.max(x - 1, 0); nx <= Math.min(x + 1, xPoints - 1); nx++) {
+				for (int ny = Math.max(y - 1, 0); ny <= Math.min(y + 1, yPoints - 1); ny++) {
+					int neighbour = nx * yPoints + ny;
+					if (nearest[neighbour] < 0) continue;
+					if (queued == queue.length) queue = Arrays.copyOf(queue, queued * 2);
+					queue[queued++] = neighbour;
+				}
+			}
+		}
+		spread(queued);
+	}
+	
+	// Breadth first spread from the queued points, each neighbour taking a nearer source where one is within RADIUS.
+	private void spread(int queued) {
+		for (int head = 0; head < queued; head++) {
+			int point = queue[head];
+			int source = nearest[point];
+			int x = point / yPoints, y = point % yPoints;
+			int sourceX = source / yPoints, sourceY = source % yPoints;
+			for (int nx = Math.max(x - 1, 0); nx <= Math.min(x + 1, xPoints - 1); nx++) {
+				for (int ny = Math.max(y - 1, 0); ny <= Math.min(y + 1, yPoints - 1); ny++) {
+					int neighbour = nx * yPoints + ny;
+					float distance = (float) Math.hypot(nx - sourceX, ny - sourceY);
+					if (distance > RADIUS || distance >= distances[neighbour]) continue;
+					distances[neighbour] = distance;
+					nearest[neighbour] = source;
+					updateRate(neighbour);
+					if (queued == queue.length) queue = Arrays.copyOf(queue, queued * 2);
+					queue[queued++] = neighbour;
+				}
+			}
+		}
+	}
+	
+	private void updateRate(int point) {
+		float distance = distances[point];
+		int rate = distance <= 1.5f ? 3 : distance <= RADIUS ? 2 : 1;
+		searchMap.setDecayRate(point / yPoints, point % yPoints, rate);
+	}
+	
+}
@@ -0,0 +1,126 @@
+package main;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+import avtas.lmcp.LMCPFactory;
+import avtas.lmcp.LMCPObject;
+
+// Non-blocking LMCP transport over a SocketChannel. Reads fill a direct buffer in large chunks, and complete frames are found
+// from their header length fields in place, a partial frame staying at the front of the buffer until the rest arrives.
+// Writes are packed into a second direct buffer and sent in one pass per flush. One thread may read while another writes.
+public class LMCPChannel {
+	
+	public interface FrameHandler {
+		// The frame, header to checksum, occupies [position, limit) of the buffer, which is only valid during the call.
+		void frame(ByteBuffer frame) throws Exception;
+	}
+	
+	private static final int BUFFER_SIZE = 1 << 16;
+	
+	private final SocketChannel channel;
+	private final Selector readSelector;
+	private final Selector writeSelector;
+	// Received bytes not yet handed off, in [0, position) while reading.
+	private ByteBuffer readBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	private ByteBuffer writeBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	
+	public LMCPChannel(SocketChannel channel) throws IOException {
+		this.channel = channel;
+		channel.configureBlocking(false);
+		readSelector = Selector.open();
+		writeSelector = Selector.open();
+		channel.register(readSelector, SelectionKey.OP_READ);
+		channel.register(writeSelector, SelectionKey.OP_WRITE);
+	}
+	
+	public static LMCPChannel connect(String host, int port) throws IOException {
+		SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port));
+		channel.socket().setTcpNoDelay(true);
+		return new LMCPChannel(channel);
+	}
+	
+	// Primary Interface Methods
+	
+	// Waits for data, reads as much as is available and passes each complete frame to the handler. Returns the number of frames.
+	public int read(FrameHandler handler) throws Exception {
+		readSelector.select();
+		readSelector.selectedKeys().clear();
+		if (channel.read(readBuffer) < 0) throw new IOException("LMCP connection closed");
+		readBuffer.flip();
+		int end = readBuffer.limit();
+		int frames = 0;
+		int pendingLength = 0;
+		while (end - readBuffer.position() >= LMCPFactory.HEADER_SIZE) {
+			int start = readBuffer.position();
+			if (readBuffer.getInt(start) != LMCPFactory.LMCP_CONTROL_STR) throw new IOException("Invalid LMCP frame header");
+			int length = LMCPFactory.HEADER_SIZE + readBuffer.getInt(start + 4) + LMCPFactory.CHECKSUM_SIZE;
+			if (end - start < length) {
+				pendingLength = length;
+				break;
+			}
+			readBuffer.limit(start + length);
+			handler.frame(readBuffer);
+			readBuffer.limit(end);
+			readBuffer.position(start + length);
+			frames++;
+		}
+		readBuffer.compact();
+		// A frame larger than the buffer needs a larger one to arrive in.
+		if (pendingLength > readBuffer.capacity()) {
+			ByteBuffer larger = ByteBuffer.allocateDirect(Math.max(pendingLength, readBuffer.capacity() * 2));
+			readBuffer.flip();
+			larger.put(readBuffer);
+			readBuffer = larger;
+		}
+		return frames;
+	}
+	
+	// Decodes one frame handed to a FrameHandler. The decoder takes whole frames as arrays, so this is the only copy made.
+	public static LMCPObject decode(ByteBuffer frame) throws Exception {
+		byte[] bytes = new byte[frame.remaining()];
+		frame.duplicate().get(bytes);
+		return LMCPFactory.getObject(bytes);
+	}
+	
+	// Packs a message into a whole frame, which write(byte[]) sends as it is.
+	public static byte[] pack(LMCPObject message) throws Exception {
+		return LMCPFactory.packMessage(message, true);
+	}
+	
+	// Packs the message for the next flush().
+	public void write(LMCPObject message) throws Exception {
+		write(pack(message));
+	}
+	
+	// Queues a frame from pack() for the next flush().
+	public void write(byte[] bytes) throws IOException {
+		if (writeBuffer.remaining() < bytes.length) {
+			flush();
+			if (writeBuffer.capacity() < bytes.length) writeBuffer = ByteBuffer.allocateDirect(bytes.length);
+		}
+		writeBuffer.put(bytes);
+	}
+	
+	public void flush() throws IOException {
+		writeBuffer.flip();
+		while (writeBuffer.hasRemaining()) {
+			if (channel.write(writeBuffer) == 0) {
+				writeSelector.select();
+				writeSelector.selectedKeys().clear();
+			}
+		}
+		writeBuffer.clear();
+	}
+	
+	public void close() throws IOException {
+		readSelector.close();
+		writeSelector.close();
+		channel.close();
+	}
+	
+}
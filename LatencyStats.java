@@ -0,0 +1,52 @@
+package main;
+
+// Running latency statistics with a power of two histogram, so percentiles cost no per-sample storage.
+// Samples may be recorded and read from different threads.
+public class LatencyStats {
+	
+	private final long[] buckets = new long[64];
+	private long count = 0;
+	private long total = 0;
+	private long max = 0;
+	
+	// Primary Interface Methods
+	
+	public synchronized void record(long nanos) {
+		if (nanos < 0) nanos = 0;
+		buckets[64 - Long.numberOfLeadingZeros(nanos | 1) - 1]++;
+		count++;
+		total += nanos;
+		max = Math.max(max, nanos);
+	}
+	
+	// Upper bound of the bucket holding the given fraction of samples, within a factor of two of the true value.
+	public synchronized long percentile(double fraction) {
+		long target = (long) Math.ceil(fraction * count);
+		long seen = 0;
+		for (int i = 0; i < buckets.length; i++) {
+			seen += buckets[i];
+			if (seen >= target && seen > 0) return Math.min(max, (2L << i) - 1);
+		}
+		return max;
+	}
+	
+	public synchronized String summary() {
+		return String.format("%d ticks, mean %.2f ms, p50 %.2f ms, p99 %.2f ms, max %.2f ms", count, count == 0 ? 0 : total / 1e6 / count,
+				percentile(0.5) / 1e6, percentile(0.99) / 1e6, max / 1e6);
+	}
+	
+	// Getters, Setters
+	
+	public synchronized long getCount() {
+		return count;
+	}
+	
+	public synchronized long getMax() {
+		return max;
+	}
+	
+	public synchronized double getMean() {
+		return count == 0 ? 0 : (double) total / count;
+	}
+	
+}
@@ -0,0 +1,148 @@
+package main;
+
+import java.util.Arrays;
+
+// Open addressing hash map from long keys to int values, avoiding the boxing of a HashMap<Long, Integer>.
+// Slots may be walked directly with capacity(), usedAt() and keyAt() to iterate without allocating.
+public class LongIntMap {
+	
+	private static final long FREE = Long.MIN_VALUE;
+	
+	private long[] keys;
+	private int[] values;
+	private int size = 0;
+	private int mask;
+	private final int minCapacity;
+	
+	public LongIntMap(int expectedSize) {
+		int capacity = 16;
+		while (capacity < expectedSize * 2) capacity <<= 1;
+		minCapacity = capacity;
+		allocate(capacity);
+	}
+	
+	// Primary Interface Methods
+	
+	public int get(long key, int defaultValue) {
+		int slot = find(key);
+		return slot < 0 ? defaultValue : values[slot];
+	}
+	
+	public boolean containsKey(long key) {
+		return find(key) >= 0;
+	}
+	
+	public void put(long key, int value) {
+		int slot = hash(key) & mask;
+		while (keys[slot] != FREE) {
+			if (keys[slot] == key) {
+				values[slot] = value;
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = key;
+		values[slot] = value;
+		size++;
+		if (size * 2 > keys.length) rehash(keys.length * 2);
+	}
+	
+	public boolean remove(long key) {
+		int slot = find(key);
+		if (slot < 0) return false;
+		removeAt(slot);
+		return true;
+	}
+	
+	// Removes the entry at a slot. Later entries may shift back into it, so an iterating caller should check the same slot again.
+	public void removeAt(int slot) {
+		keys[slot] = FREE;
+		size--;
+		int next = (slot + 1) & mask;
+		while (keys[next] != FREE) {
+			int home = hash(keys[next]) & mask;
+			// Move the entry back if the emptied slot lies between its home slot and its current slot.
+			if (((next - home) & mask) >= ((next - slot) & mask)) {
+				keys[slot] = keys[next];
+				values[slot] = values[next];
+				keys[next] = FREE;
+				slot = next;
+			}
+			next = (next + 1) & mask;
+		}
+	}
+	
+	public void clear() {
+		Arrays.fill(keys, FREE);
+		size = 0;
+	}
+	
+	// Shrinks the table once under an eighth full, so walking its slots costs in proportion to the entries again.
+	// Only halves down to a quarter full, so a map that grows back soon is not rehashed over and over. Moves entries between slots.
+	public void trim() {
+		if (keys.length <= minCapacity || size * 8 >= keys.length) return;
+		int capacity = keys.length;
+		while (capacity > minCapacity && size * 4 < capacity) capacity >>= 1;
+		rehash(capacity);
+	}
+	
+	// Secondary Methods
+	
+	private int find(long key) {
+		int slot = hash(key) & mask;
+		while (keys[slot] != FREE) {
+			if (keys[slot] == key) return slot;
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+	
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+	
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new int[capacity];
+		Arrays.fill(keys, FREE);
+		mask = capacity - 1;
+	}
+	
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		allocate(capacity);
+		size = 0;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != FREE) put(oldKeys[i], oldValues[i]);
+		}
+	}
+	
+	// Getters, Setters
+	
+	public int size() {
+		return size;
+	}
+	
+	public int capacity() {
+		return keys.length;
+	}
+	
+	public boolean usedAt(int slot) {
+		return keys[slot] != FREE;
+	}
+	
+	public long keyAt(int slot) {
+		return keys[slot];
+	}
+	
+	public int valueAt(int slot) {
+		return values[slot];
+	}
+	
+	public void setValueAt(int slot, int value) {
+		values[slot] = value;
+	}
+	
+}
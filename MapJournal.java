@@ -0,0 +1,234 @@
+package main;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Persists MapManager state as a memory-mapped snapshot plus an append-only journal of the mutations made since.
+// Snapshots alternate between two files, each only marked valid once fully written, so a crash mid-snapshot keeps the older one.
+// Journal records pass through a fixed ring to a background writer thread, the tick only ever copies a few primitives.
+// A snapshot file only has the points changed since it was last written rewritten, so a snapshot costs the tiles changed, not the area.
+public class MapJournal {
+	
+	public static final byte HAZARD = 1;
+	public static final byte SAFE = 2;
+	public static final byte RESIZE = 3;
+	public static final byte TICK = 4;
+	private static final byte CHECKPOINT = 5;
+	// A swath is journalled as its start followed by its end.
+	public static final byte SWATH_START = 6;
+	public static final byte SWATH = 7;
+	
+	private static final int SNAPSHOT_MAGIC = 0x46484350;
+	private static final int SNAPSHOT_HEADER = 16; // magic int, sequence long, body length int
+	// sequence long, type byte, two doubles, two ints
+	private static final int RECORD_SIZE = 8 + 1 + 8 + 8 + 4 + 4;
+	private static final int RING_SIZE = 1 << 14;
+	private static final int RING_MASK = RING_SIZE - 1;
+	
+	private final File[] snapshotFiles;
+	private final MappedByteBuffer[] snapshots = new MappedByteBuffer[2];
+	// Length and map versions each snapshot file was last written with, null until it is written in full.
+	private final int[] snapshotLengths = new int[2];
+	private final long[][] snapshotVersions = new long[2][];
+	private int nextSnapshot = 0;
+	// Snapshot the queued checkpoint forces, at most one checkpoint is queued at a time.
+	private volatile MappedByteBuffer checkpointSnapshot;
+	private long checkpointsQueued = 0;
+	private volatile long checkpointsDone = 0;
+	private final FileChannel journalChannel;
+	
+	// Single producer (the tick thread), single consumer (the writer thread) ring of records.
+	private final long[] ringSequence = new long[RING_SIZE];
+	private final byte[] ringType = new byte[RING_SIZE];
+	private final double[] ringA = new double[RING_SIZE];
+	private final double[] ringB = new double[RING_SIZE];
+	private final int[] ringC = new int[RING_SIZE];
+	private final int[] ringD = new int[RING_SIZE];
+	private volatile long head = 0;
+	private volatile long tail = 0;
+	
+	private long sequence = 1;
+	private boolean overflowed = false;
+	private volatile boolean running = true;
+	private final Thread writer;
+	
+	public MapJournal(File directory) throws IOException {
+		directory.mkdirs();
+		snapshotFiles = new File[] {new File(directory, "maps.snapshot.0"), new File(directory, "maps.snapshot.1")};
+		journalChannel = new RandomAccessFile(new File(directory, "maps.journal"), "rw").getChannel();
+		writer = new Thread(this::writeLoop, "MapJournal-writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+	
+	// Primary Interface Methods
+	
+	// Queues a record without blocking. If the ring is full the record is dropped, leaving a sequence gap that recovery stops at,
+	// and needsCheckpoint() reports true until the next snapshot covers the lost mutations.
+	public void append(byte type, double a, double b, int c, int d) {
+		if (head - tail >= RING_SIZE) {
+			overflowed = true;
+			if (type != CHECKPOINT) sequence++;
+			return;
+		}
+		int slot = (int) (head & RING_MASK);
+		ringSequence[slot] = type == CHECKPOINT ? 0 : sequence++;
+		ringType[slot] = type;
+		ringA[slot] = a;
+		ringB[slot] = b;
+		ringC[slot] = c;
+		ringD[slot] = d;
+		head = head + 1;
+	}
+	
+	// Writes a snapshot built by writer, then queues a checkpoint so the writer thread truncates the journal records it covers.
+	// Skipped while the ring is full or the last checkpoint is still being written, a later call will succeed.
+	public void snapshot(MapManager mapManager) throws IOException {
+		if (head - tail >= RING_SIZE || checkpointsDone != checkpointsQueued) return;
+		long snapshotSequence = sequence - 1;
+		int length = mapManager.snapshotSize();
+		int index = nextSnapshot;
+		MappedByteBuffer buffer = snapshots[index];
+		if (buffer == null || buffer.capacity() < SNAPSHOT_HEADER + length) {
+			try (FileChannel channel = new RandomAccessFile(snapshotFiles[index], "rw").getChannel()) {
+				buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, SNAPSHOT_HEADER + length * 2L);
+			}
+			snapshots[index] = buffer;
+			snapshotVersions[index] = null;
+		}
+		if (snapshotLengths[index] != length) snapshotVersions[index] = null;
+		buffer.putInt(0, 0);
+		buffer.position(SNAPSHOT_HEADER);
+		snapshotVersions[index] = mapManager.writeSnapshot(buffer, snapshotVersions[index]);
+		snapshotLengths[index] = length;
+		buffer.putLong(4, snapshotSequence);
+		buffer.putInt(12, length);
+		buffer.putInt(0, SNAPSHOT_MAGIC);
+		nextSnapshot = 1 - index;
+		overflowed = false;
+		checkpointSnapshot = buffer;
+		checkpointsQueued++;
+		append(CHECKPOINT, 0, 0, index, 0);
+	}
+	
+	// Restores the newest valid snapshot and replays the contiguous journal records after it. Returns false if nothing was found.
+	public boolean recover(MapManager mapManager) throws IOException {
+		long bestSequence = -1;
+		ByteBuffer best = null;
+		for (int i = 0; i < snapshotFiles.length; i++) {
+			if (!snapshotFiles[i].exists() || snapshotFiles[i].length() < SNAPSHOT_HEADER) continue;
+			try (FileChannel channel = new RandomAccessFile(snapshotFiles[i], "r").getChannel()) {
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+				if (buffer.getInt(0) == SNAPSHOT_MAGIC && buffer.getLong(4) > bestSequence) {
+					bestSequence = buffer.getLong(4);
+					best = buffer;
+					nextSnapshot = 1 - i;
+				}
+			}
+		}
+		if (best == null) return false;
+		best.position(SNAPSHOT_HEADER);
+		if (!mapManager.readSnapshot(best)) return false;
+		
+		long lastSequence = bestSequence;
+		ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+		long position = 0;
+		while (true) {
+			record.clear();
+			if (journalChannel.read(record, position) < RECORD_SIZE) break;
+			position += RECORD_SIZE;
+			record.flip();
+			long recordSequence = record.getLong();
+			if (recordSequence <= lastSequence) continue;
+			if (recordSequence != lastSequence + 1) break; // Records were dropped here, later ones cannot be applied.
+			lastSequence = recordSequence;
+			mapManager.replay(record.get(), record.getDouble(), record.getDouble(), record.getInt(), record.getInt());
+		}
+		sequence = lastSequence + 1;
+		return true;
+	}
+	
+	// Writes out the queued records, then stops the writer and closes the journal, returning once the writer has exited.
+	// Another journal may then open the same directory. The snapshot mappings are released when collected.
+	public void close() {
+		running = false;
+		LockSupport.unpark(writer);
+		try {
+			writer.join();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		snapshots[0] = null;
+		snapshots[1] = null;
+		try {
+			journalChannel.close();
+		} catch (IOException ex) {
+			Logger.getLogger(MapJournal.class.getName()).log(Level.WARNING, "Map journal close failed", ex);
+		}
+	}
+	
+	// Secondary Methods
+	
+	private void writeLoop() {
+		ByteBuffer batch = ByteBuffer.allocateDirect(RECORD_SIZE * 1024);
+		while (true) {
+			try {
+				if (tail == head) {
+					if (!running) return;
+					LockSupport.parkNanos(1000000);
+					continue;
+				}
+				batch.clear();
+				// Slots are only released once written, so a drained ring means every record reached the journal.
+				long next = tail;
+				while (next != head && batch.remaining() >= RECORD_SIZE) {
+					int slot = (int) (next & RING_MASK);
+					if (ringType[slot] == CHECKPOINT) {
+						// Everything before the checkpoint is in the snapshot, which must reach disk before the journal is cut.
+						flush(batch);
+						checkpointSnapshot.force();
+						journalChannel.truncate(0);
+						journalChannel.position(0);
+						checkpointsDone = checkpointsDone + 1;
+					} else {
+						batch.putLong(ringSequence[slot]).put(ringType[slot]).putDouble(ringA[slot]).putDouble(ringB[slot]).putInt(ringC[slot]).putInt(ringD[slot]);
+					}
+					next++;
+				}
+				flush(batch);
+				tail = next;
+			} catch (IOException ex) {
+				Logger.getLogger(MapJournal.class.getName()).log(Level.WARNING, "Map journal write failed", ex);
+				running = false;
+				return;
+			}
+		}
+	}
+	
+	private void flush(ByteBuffer batch) throws IOException {
+		batch.flip();
+		while (batch.hasRemaining()) {
+			journalChannel.write(batch);
+		}
+		batch.clear();
+	}
+	
+	// Getters, Setters
+	
+	public boolean needsCheckpoint() {
+		return overflowed;
+	}
+	
+	// True once the writer thread has written out every record queued so far.
+	boolean isDrained() {
+		return tail == head;
+	}
+	
+}
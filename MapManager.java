@@ -1,13 +1,23 @@
 package main;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class MapManager {
 	
 	private ByteMap heatMap;
 	private ByteMap pathMap;
 	List<ByteMap> searchMaps = new ArrayList<>();
+	List<MapPyramid> searchPyramids = new ArrayList<>();
+	// One planner per resolution, since resolutions are planned concurrently.
+	List<PathPlanner> pathPlanners = new ArrayList<>();
+	List<HazardDistanceField> hazardFields = new ArrayList<>();
 	
 	private int[] resolutions;
 	
@@ -15,21 +25,51 @@ public class MapManager {
 	protected int xPoints;
 	protected int yPoints;
 	
+	// Search area the maps were created for, a snapshot is only restored onto the same area.
+	private final double[] searchArea;
+	
+	private MapJournal journal = null;
+	private boolean replaying = false;
+	
+	// Half the width of a scanning sensor's footprint, in degrees. The gimbal sweeps 60 degrees either side of the heading,
+	// so this stays inside the sensor's 0.0045 degree range.
+	public static final double SWATH_HALF_WIDTH = 0.0035;
+	private final double[] swathLongitudes = new double[4];
+	private final double[] swathLatitudes = new double[4];
+	private double swathStartLongitude;
+	private double swathStartLatitude;
+	
 	public MapManager(double initLongitude, double initLatitude, double longitude, double latitude, int xPoints, int yPoints, int[] resolutions) {
+		this.searchArea = new double[] {initLongitude, initLatitude, longitude, latitude, xPoints, yPoints};
 		this.xPoints = xPoints;
 		this.yPoints = yPoints;
 		this.resolutions = resolutions;
-		heatMap = new ByteMap(initLongitude, initLatitude, longitude, latitude, xPoints, yPoints);
-		pathMap = new ByteMap(initLongitude, initLatitude, longitude, latitude, xPoints/resolutions[1], yPoints/resolutions[1]);
+		// Tiled stores, the default, let maps grow at the edges without copying points. Most layers derived from each map still rebuild
+		// on a resize, so growing a map costs O(area) overall. Resizes only follow hazards found near an edge, so are rare.
+		// Tiles left untouched save only the store's own byte per point. The derived layers keep dense per point arrays several
+		// times larger, so memory still follows the full map area.
+		heatMap = new ByteMap(initLongitude, initLatitude, longitude, latitude, newStore(xPoints, yPoints));
+		pathMap = new ByteMap(initLongitude, initLatitude, longitude, latitude, newStore(xPoints/resolutions[1], yPoints/resolutions[1]));
 		for (int i = 0; i < resolutions.length; i++) {
-			searchMaps.add(new ByteMap(initLongitude, initLatitude, longitude, latitude, xPoints/resolutions[i], yPoints/resolutions[i]));
+			ByteMap searchMap = new ByteMap(initLongitude, initLatitude, longitude, latitude, newStore(xPoints/resolutions[i], yPoints/resolutions[i]));
+			searchMap.setDecay((byte) -20, (byte) 50);
+			searchMaps.add(searchMap);
+			searchPyramids.add(new MapPyramid(searchMap));
+			pathPlanners.add(new PathPlanner(pathMap));
+			hazardFields.add(new HazardDistanceField(heatMap, searchMap, (byte) 100));
 		}
 	}
 	
 	public void tick() {
+		record(MapJournal.TICK, 0, 0, 0, 0);
+		// Attention drifts back towards [-20, 50], applied lazily by the maps.
+		// Points near known hazards drift back faster, so they are revisited sooner.
 		for (int i = 0; i < searchMaps.size(); i++) {
-			searchMaps.get(i).incrementBelowValue((byte) -20);
-			searchMaps.get(i).decrementAboveValue((byte) 50);
+			hazardFields.get(i).refresh();
+			searchMaps.get(i).age();
+		}
+		if (journal != null && journal.needsCheckpoint()) {
+			checkpoint();
 		}
 	}
 	
@@ -49,6 +89,11 @@ public class MapManager {
 	
 	public void setHazard(double longitude, double latitude, int resIndex) {
 		checkResize(heatMap.convertLong(longitude), heatMap.convertLat(latitude));
+		applyHazard(longitude, latitude, resIndex);
+	}
+	
+	private void applyHazard(double longitude, double latitude, int resIndex) {
+		record(MapJournal.HAZARD, longitude, latitude, resIndex, 0);
 		heatMap.setPoint(longitude, latitude, (byte) 100);
 		pathMap.setPoint(longitude, latitude, (byte) 100);
 		searchMaps.get(resIndex).setPointIncrementAdjacentThreshold(longitude, latitude, (byte) -100, (byte) 20, (byte) 60); // Only search around.
@@ -58,6 +103,7 @@ public class MapManager {
 	}
 	
 	public void setSafe(double longitude, double latitude, int resIndex) {
+		record(MapJournal.SAFE, longitude, latitude, resIndex, 0);
 		heatMap.setArea(longitude, latitude, resolutions[resIndex], resolutions[resIndex], (byte) -100);
 		pathMap.setPoint(longitude, latitude, (byte) -100);
 		searchMaps.get(resIndex).setPoint(longitude, latitude, (byte) -50);
@@ -66,12 +112,50 @@ public class MapManager {
 		}
 	}
 	
+	// Marks the footprint swept by a scanning sensor between two positions as searched, a rectangle SWATH_HALF_WIDTH either side
+	// of the track and beyond each end. Known hazards in the heat and path maps are left alone, detections arrive separately.
+	public void setSafeSwath(double startLongitude, double startLatitude, double endLongitude, double endLatitude, int resIndex) {
+		record(MapJournal.SWATH_START, startLongitude, startLatitude, 0, 0);
+		record(MapJournal.SWATH, endLongitude, endLatitude, resIndex, 0);
+		double dLong = endLongitude - startLongitude;
+		double dLat = endLatitude - startLatitude;
+		double length = Math.hypot(dLong, dLat);
+		// Along and across the track, scaled to the half width. A drone that has not moved sweeps a square.
+		double alongLong = length == 0 ? SWATH_HALF_WIDTH : dLong / length * SWATH_HALF_WIDTH;
+		double alongLat = length == 0 ? 0 : dLat / length * SWATH_HALF_WIDTH;
+		double acrossLong = -alongLat;
+		double acrossLat = alongLong;
+		setSwathCorner(0, startLongitude - alongLong - acrossLong, startLatitude - alongLat - acrossLat);
+		setSwathCorner(1, endLongitude + alongLong - acrossLong, endLatitude + alongLat - acrossLat);
+		setSwathCorner(2, endLongitude + alongLong + acrossLong, endLatitude + alongLat + acrossLat);
+		setSwathCorner(3, startLongitude - alongLong + acrossLong, startLatitude - alongLat + acrossLat);
+		heatMap.setConvexIfBelow(swathLongitudes, swathLatitudes, 4, (byte) -100, (byte) 100);
+		pathMap.setConvexIfBelow(swathLongitudes, swathLatitudes, 4, (byte) -100, (byte) 100);
+		for (int i = resIndex; i < searchMaps.size(); i++) {
+			searchMaps.get(i).setConvexIfBelow(swathLongitudes, swathLatitudes, 4, (byte) -50, (byte) 80);
+		}
+	}
+	
 	public void resize(int xChange, int yChange) {
-		xPoints += Math.abs(xChange);
-		yPoints += Math.abs(yChange);
+		record(MapJournal.RESIZE, 0, 0, xChange, yChange);
 		heatMap.resize(xChange * resolutions[0], yChange * resolutions[0]);
+		pathMap.resize(xChange * resolutions[0] / resolutions[1], yChange * resolutions[0] / resolutions[1]);
+		xPoints = heatMap.getXPoints();
+		yPoints = heatMap.getYPoints();
 		for (int i = 0; i < searchMaps.size(); i++) {
-			searchMaps.get(i).resize(xChange * resolutions[resolutions.length - 1 - i], yChange * resolutions[resolutions.length - 1 - i]);
+			searchMaps.get(i).resize(xChange * resolutions[0] / resolutions[i], yChange * resolutions[0] / resolutions[i]);
+		}
+	}
+	
+	// Backing store for each map, set by firehack.store. Tiled by default, "array" for one heap array, "direct" for off-heap.
+	private static ByteStore newStore(int xPoints, int yPoints) {
+		switch (System.getProperty("firehack.store", "tiled")) {
+		case "array":
+			return new ArrayByteStore(xPoints, yPoints);
+		case "direct":
+			return new DirectByteStore(xPoints, yPoints);
+		default:
+			return new TiledByteStore(xPoints, yPoints);
 		}
 	}
 	
@@ -93,6 +177,133 @@ public class MapManager {
 		}
 	}
 	
+	// Persistence
+	
+	// Recovers any state persisted for this search area in the directory, then journals all further changes there.
+	public void enableJournal(File directory) {
+		try {
+			journal = new MapJournal(directory);
+			replaying = true;
+			if (journal.recover(this)) {
+				System.out.println("Recovered map state from " + directory);
+			}
+			replaying = false;
+			journal.snapshot(this);
+		} catch (IOException ex) {
+			Logger.getLogger(MapManager.class.getName()).log(Level.WARNING, "Map journal disabled", ex);
+			// Stops the writer thread the journal already started.
+			if (journal != null) journal.close();
+			journal = null;
+			replaying = false;
+		}
+	}
+	
+	// Flushes and closes the journal, so a later MapManager can take over its directory.
+	public void closeJournal() {
+		if (journal == null) return;
+		journal.close();
+		journal = null;
+	}
+	
+	public void checkpoint() {
+		if (journal == null) return;
+		try {
+			journal.snapshot(this);
+		} catch (IOException ex) {
+			Logger.getLogger(MapManager.class.getName()).log(Level.WARNING, "Map snapshot failed", ex);
+		}
+	}
+	
+	private void setSwathCorner(int corner, double longitude, double latitude) {
+		swathLongitudes[corner] = longitude;
+		swathLatitudes[corner] = latitude;
+	}
+	
+	private void record(byte type, double a, double b, int c, int d) {
+		if (journal != null && !replaying) {
+			journal.append(type, a, b, c, d);
+		}
+	}
+	
+	void replay(byte type, double a, double b, int c, int d) {
+		switch (type) {
+		case MapJournal.HAZARD:
+			applyHazard(a, b, c);
+			break;
+		case MapJournal.SAFE:
+			setSafe(a, b, c);
+			break;
+		case MapJournal.RESIZE:
+			resize(c, d);
+			break;
+		case MapJournal.TICK:
+			tick();
+			break;
+		case MapJournal.SWATH_START:
+			swathStartLongitude = a;
+			swathStartLatitude = b;
+			break;
+		case MapJournal.SWATH:
+			setSafeSwath(swathStartLongitude, swathStartLatitude, a, b, c);
+			break;
+		}
+	}
+	
+	int snapshotSize() {
+		int size = searchArea.length * 8 + 4;
+		size += heatMap.snapshotSize() + pathMap.snapshotSize();
+		for (ByteMap searchMap : searchMaps) {
+			size += searchMap.snapshotSize();
+		}
+		return size;
+	}
+	
+	void writeSnapshot(ByteBuffer out) {
+		writeSnapshot(out, null);
+	}
+	
+	// Writes only what changed since the call that returned versions, which must have written the same layout into out,
+	// as ByteMap.writeSnapshot(out, sinceVersion) does per map. Pass null to write everything. Returns the versions to pass next time.
+	long[] writeSnapshot(ByteBuffer out, long[] versions) {
+		if (versions == null || versions.length != searchMaps.size() + 2) {
+			versions = new long[searchMaps.size() + 2];
+			Arrays.fill(versions, -1);
+		}
+		for (int i = 0; i < searchArea.length; i++) {
+			out.putDouble(searchArea[i]);
+		}
+		out.putInt(searchMaps.size());
+		versions[0] = heatMap.writeSnapshot(out, versions[0]);
+		versions[1] = pathMap.writeSnapshot(out, versions[1]);
+		for (int i = 0; i < searchMaps.size(); i++) {
+			versions[i + 2] = searchMaps.get(i).writeSnapshot(out, versions[i + 2]);
+		}
+		return versions;
+	}
+	
+	// Returns false, leaving the maps untouched, if the snapshot was taken for a different search area.
+	boolean readSnapshot(ByteBuffer in) {
+		for (int i = 0; i < searchArea.length; i++) {
+			if (in.getDouble() != searchArea[i]) return false;
+		}
+		if (in.getInt() != searchMaps.size()) return false;
+		heatMap.readSnapshot(in);
+		pathMap.readSnapshot(in);
+		for (ByteMap searchMap : searchMaps) {
+			searchMap.readSnapshot(in);
+		}
+		xPoints = heatMap.getXPoints();
+		yPoints = heatMap.getYPoints();
+		return true;
+	}
+	
+	// Getters, Setters
+	
+	// True once every journal record made so far has been written, or there is no journal.
+	boolean isJournalDrained() {
+		return journal == null || journal.isDrained();
+	}
+	
 	public ByteMap getHeatMap() {
 		return heatMap;
 	}
@@ -105,4 +316,16 @@ public class MapManager {
 		return searchMaps.get(resIndex);
 	}
 	
+	public MapPyramid getSearchPyramid(int resIndex) {
+		return searchPyramids.get(resIndex);
+	}
+	
+	public PathPlanner getPathPlanner(int resIndex) {
+		return pathPlanners.get(resIndex);
+	}
+	
+	public HazardDistanceField getHazardField(int resIndex) {
+		return hazardFields.get(resIndex);
+	}
+	
 }
@@ -0,0 +1,254 @@
+package main;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+// Max and sum pyramid over a ByteMap. Level l holds one block per 2^l x 2^l points, level 0 is the map itself.
+// Used to find the best scoring points for a drone by descending from coarse blocks, rather than scoring every point.
+public class MapPyramid implements ByteMapListener {
+	
+	// Guards block bounds against rounding, so no block is pruned below a point it contains.
+	private static final double BOUND_EPSILON = 1e-9;
+	
+	private final ByteMap map;
+	
+	private int levels;
+	private int[] levelXBlocks;
+	private int[] levelYBlocks;
+	private byte[][] maxLevels;
+	private int[][] sumLevels;
+	private boolean stale = true;
+	
+	// Search frontier, a binary max-heap of blocks ordered by score bound.
+	private double[] heapBound = new double[64];
+	private int[] heapLevel = new int[64];
+	private int[] heapX = new int[64];
+	private int[] heapY = new int[64];
+	private int heapSize = 0;
+	// Least bound of a block in the current search.
+	private byte floor;
+	
+	public MapPyramid(ByteMap map) {
+		this.map = map;
+		map.addListener(this);
+	}
+	
+	// Primary Interface Methods
+	
+	// Finds up to count points with the highest score, value - distanceWeight * distance from (longitude, latitude) to the point position.
+	// Points in excluded (indexed x * yPoints + y) are skipped. Results are written best first, ties broken by lowest index, and the number found is returned.
+	// The map is not settled, points are scored by their decayed values and blocks bounded by what their stored values may decay to.
+	public int bestPoints(double longitude, double latitude, double distanceWeight, BitSet excluded, int count, int[] xOut, int[] yOut, double[] scoreOut) {
+		if (stale) rebuild();
+		// Stored values below the decay range rise towards its floor, those above it only fall.
+		floor = map.isDecaying() ? map.getDecayLower() : Byte.MIN_VALUE;
+		int found = 0;
+		heapSize = 0;
+		pushBlock(levels - 1, 0, 0, longitude, latitude, distanceWeight, excluded);
+		while (heapSize > 0 && found < count) {
+			int level = heapLevel[0];
+			int bx = heapX[0];
+			int by = heapY[0];
+			double bound = heapBound[0];
+			pop();
+			if (level == 0) {
+				xOut[found] = bx;
+				yOut[found] = by;
+				scoreOut[found] = bound;
+				found++;
+				continue;
+			}
+			int childLevel = level - 1;
+			for (int cx = bx << 1; cx < Math.min((bx << 1) + 2, levelXBlocks[childLevel]); cx++) {
+				for (int cy = by << 1; cy < Math.min((by << 1) + 2, levelYBlocks[childLevel]); cy++) {
+					pushBlock(childLevel, cx, cy, longitude, latitude, distanceWeight, excluded);
+				}
+			}
+		}
+		return found;
+	}
+	
+	public byte getMax(int level, int bx, int by) {
+		if (stale) rebuild();
+		if (level == 0) return map.store.get(bx, by);
+		return maxLevels[level][bx * levelYBlocks[level] + by];
+	}
+	
+	public int getSum(int level, int bx, int by) {
+		if (stale) rebuild();
+		if (level == 0) return map.store.get(bx, by);
+		return sumLevels[level][bx * levelYBlocks[level] + by];
+	}
+	
+	public void cellChanged(int x, int y, byte oldValue, byte newValue) {
+		if (stale) return;
+		int delta = newValue - oldValue;
+		for (int level = 1; level < levels; level++) {
+			x >>= 1;
+			y >>= 1;
+			int index = x * levelYBlocks[level] + y;
+			sumLevels[level][index] += delta;
+			maxLevels[level][index] = childMax(level, x, y);
+		}
+	}
+	
+	public void areaChanged(int xStart, int yStart, int xEnd, int yEnd) {
+		if (stale || xStart >= xEnd || yStart >= yEnd) return;
+		for (int level = 1; level < levels; level++) {
+			xStart >>= 1;
+			yStart >>= 1;
+			xEnd = ((xEnd - 1) >> 1) + 1;
+			yEnd = ((yEnd - 1) >> 1) + 1;
+			for (int x = xStart; x < xEnd; x++) {
+				for (int y = yStart; y < yEnd; y++) {
+					updateBlock(level, x, y);
+				}
+			}
+		}
+	}
+	
+	public void resized(int xChange, int yChange) {
+		stale = true;
+	}
+	
+	// Secondary Methods
+	
+	private void rebuild() {
+		int xBlocks = map.getXPoints();
+		int yBlocks = map.getYPoints();
+		levels = 1;
+		while ((1 << (levels - 1)) < Math.max(xBlocks, yBlocks)) levels++;
+		levelXBlocks = new int[levels];
+		levelYBlocks = new int[levels];
+		maxLevels = new byte[levels][];
+		sumLevels = new int[levels][];
+		for (int level = 0; level < levels; level++) {
+			levelXBlocks[level] = xBlocks;
+			levelYBlocks[level] = yBlocks;
+			if (level > 0) {
+				maxLevels[level] = new byte[xBlocks * yBlocks];
+				sumLevels[level] = new int[xBlocks * yBlocks];
+				for (int x = 0; x < xBlocks; x++) {
+					for (int y = 0; y < yBlocks; y++) {
+						updateBlock(level, x, y);
+					}
+				}
+			}
+			xBlocks = (xBlocks + 1) >> 1;
+			yBlocks = (yBlocks + 1) >> 1;
+		}
+		stale = false;
+	}
+	
+	private void updateBlock(int level, int x, int y) {
+		int sum = 0;
+		int childLevel = level - 1;
+		for (int cx = x << 1; cx < Math.min((x << 1) + 2, levelXBlocks[childLevel]); cx++) {
+			for (int cy = y << 1; cy < Math.min((y << 1) + 2, levelYBlocks[childLevel]); cy++) {
+				sum += childLevel == 0 ? map.store.get(cx, cy) : sumLevels[childLevel][cx * levelYBlocks[childLevel] + cy];
+			}
+		}
+		int index = x * levelYBlocks[level] + y;
+		sumLevels[level][index] = sum;
+		maxLevels[level][index] = childMax(level, x, y);
+	}
+	
+	private byte childMax(int level, int x, int y) {
+		byte max = Byte.MIN_VALUE;
+		int childLevel = level - 1;
+		for (int cx = x << 1; cx < Math.min((x << 1) + 2, levelXBlocks[childLevel]); cx++) {
+			for (int cy = y << 1; cy < Math.min((y << 1) + 2, levelYBlocks[childLevel]); cy++) {
+				byte value = childLevel == 0 ? map.store.get(cx, cy) : maxLevels[childLevel][cx * levelYBlocks[childLevel] + cy];
+				if (value > max) max = value;
+			}
+		}
+		return max;
+	}
+	
+	private void pushBlock(int level, int x, int y, double longitude, double latitude, double distanceWeight, BitSet excluded) {
+		if (level == 0) {
+			if (excluded != null && excluded.get(x * map.getYPoints() + y)) return;
+			double distance = Math.hypot(latitude - map.convertYPoint(y), longitude - map.convertXPoint(x));
+			push((double) map.getValue(x, y) - distance * distanceWeight, 0, x, y);
+		} else {
+			push(blockBound(level, x, y, longitude, latitude, distanceWeight), level, x, y);
+		}
+	}
+	
+	// Upper bound of the score of any point in a block, its max value less the weighted distance to the nearest point position.
+	// The max is of stored values, which points below the decay range may since have risen from, up to its floor.
+	private double blockBound(int level, int bx, int by, double longitude, double latitude, double distanceWeight) {
+		int xStart = bx << level;
+		int yStart = by << level;
+		int xLast = Math.min(xStart + (1 << level), map.getXPoints()) - 1;
+		int yLast = Math.min(yStart + (1 << level), map.getYPoints()) - 1;
+		double long1 = map.convertXPoint(xStart), long2 = map.convertXPoint(xLast);
+		double lat1 = map.convertYPoint(yStart), lat2 = map.convertYPoint(yLast);
+		double nearestLong = Math.max(Math.min(longitude, Math.max(long1, long2)), Math.min(long1, long2));
+		double nearestLat = Math.max(Math.min(latitude, Math.max(lat1, lat2)), Math.min(lat1, lat2));
+		double distance = Math.hypot(latitude - nearestLat, longitude - nearestLong);
+		return (double) Math.max(maxLevels[level][bx * levelYBlocks[level] + by], floor) - distance * distanceWeight + BOUND_EPSILON;
+	}
+	
+	// Heap order: higher bound first, then blocks before points so ties are expanded, then points by lowest index.
+	private boolean before(int a, int b) {
+		if (heapBound[a] != heapBound[b]) return heapBound[a] > heapBound[b];
+		if ((heapLevel[a] == 0) != (heapLevel[b] == 0)) return heapLevel[a] != 0;
+		if (heapX[a] != heapX[b]) return heapX[a] < heapX[b];
+		return heapY[a] < heapY[b];
+	}
+	
+	private void push(double bound, int level, int x, int y) {
+		if (heapSize == heapBound.length) {
+			heapBound = Arrays.copyOf(heapBound, heapSize * 2);
+			heapLevel = Arrays.copyOf(heapLevel, heapSize * 2);
+			heapX = Arrays.copyOf(heapX, heapSize * 2);
+			heapY = Arrays.copyOf(heapY, heapSize * 2);
+		}
+		int i = heapSize++;
+		set(i, bound, level, x, y);
+		while (i > 0 && before(i, (i - 1) >> 1)) {
+			swap(i, (i - 1) >> 1);
+			i = (i - 1) >> 1;
+		}
+	}
+	
+	private void pop() {
+		heapSize--;
+		if (heapSize == 0) return;
+		set(0, heapBound[heapSize], heapLevel[heapSize], heapX[heapSize], heapY[heapSize]);
+		int i = 0;
+		while (true) {
+			int best = i;
+			int left = 2 * i + 1;
+			int right = left + 1;
+			if (left < heapSize && before(left, best)) best = left;
+			if (right < heapSize && before(right, best)) best = right;
+			if (best == i) return;
+			swap(i, best);
+			i = best;
+		}
+	}
+	
+	private void set(int i, double bound, int level, int x, int y) {
+		heapBound[i] = bound;
+		heapLevel[i] = level;
+		heapX[i] = x;
+		heapY[i] = y;
+	}
+	
+	private void swap(int a, int b) {
+		double bound = heapBound[a];
+		int level = heapLevel[a], x = heapX[a], y = heapY[a];
+		set(a, heapBound[b], heapLevel[b], heapX[b], heapY[b]);
+		set(b, bound, level, x, y);
+	}
+	
+	// Getters, Setters
+	
+	public int getLevels() {
+		if (stale) rebuild();
+		return levels;
+	}
+	
+}
@@ -0,0 +1,107 @@
+package main;
+
+import java.util.Arrays;
+
+import avtas.lmcp.LMCPObject;
+
+// Routes each incoming LMCP object to the handler registered for its exact series and type, two array lookups rather than
+// a chain of instanceof checks. Objects with no handler are counted and dropped, optionally keeping the most recent for diagnostics.
+public class MessageDispatcher {
+	
+	public interface Handler {
+		// Returns true if the message ends a tick.
+		boolean handle(LMCPObject message) throws Exception;
+	}
+	
+	// Series name to series index, then handlers and unhandled counts indexed by type.
+	private final LongIntMap seriesIndex = new LongIntMap(4);
+	private Handler[][] handlers = new Handler[0][];
+	private long[][] unhandledCounts = new long[0][];
+	private long unhandledTotal = 0;
+	
+	// Most recent unhandled objects, oldest overwritten first.
+	private final LMCPObject[] recent;
+	private int recentNext = 0;
+	private int recentCount = 0;
+	
+	public MessageDispatcher(int recentCapacity) {
+		recent = new LMCPObject[Math.max(recentCapacity, 0)];
+	}
+	
+	// Primary Interface Methods
+	
+	// Handles every object of the prototype's series and type.
+	public void register(LMCPObject prototype, Handler handler) {
+		int series = seriesOf(prototype.getLMCPSeriesNameAsLong());
+		int type = prototype.getLMCPType();
+		ensureType(series, type);
+		handlers[series][type] = handler;
+	}
+	
+	public boolean dispatch(LMCPObject message) throws Exception {
+		int series = seriesOf(message.getLMCPSeriesNameAsLong());
+		int type = message.getLMCPType();
+		if (type >= 0) {
+			ensureType(series, type);
+			Handler handler = handlers[series][type];
+			if (handler != null) return handler.handle(message);
+			unhandledCounts[series][type]++;
+		}
+		unhandledTotal++;
+		if (recent.length > 0) {
+			recent[recentNext] = message;
+			recentNext = (recentNext + 1) % recent.length;
+			recentCount = Math.min(recentCount + 1, recent.length);
+		}
+		return false;
+	}
+	
+	public void clearRecent() {
+		Arrays.fill(recent, null);
+		recentNext = 0;
+		recentCount = 0;
+	}
+	
+	// Secondary Methods
+	
+	private int seriesOf(long seriesName) {
+		int series = seriesIndex.get(seriesName, -1);
+		if (series >= 0) return series;
+		series = handlers.length;
+		seriesIndex.put(seriesName, series);
+		handlers = Arrays.copyOf(handlers, series + 1);
+		unhandledCounts = Arrays.copyOf(unhandledCounts, series + 1);
+		handlers[series] = new Handler[0];
+		unhandledCounts[series] = new long[0];
+		return series;
+	}
+	
+	private void ensureType(int series, int type) {
+		if (type < handlers[series].length) return;
+		handlers[series] = Arrays.copyOf(handlers[series], type + 1);
+		unhandledCounts[series] = Arrays.copyOf(unhandledCounts[series], type + 1);
+	}
+	
+	// Getters, Setters
+	
+	public long getUnhandledTotal() {
+		return unhandledTotal;
+	}
+	
+	public long getUnhandledCount(LMCPObject prototype) {
+		int series = seriesIndex.get(prototype.getLMCPSeriesNameAsLong(), -1);
+		int type = prototype.getLMCPType();
+		if (series < 0 || type < 0 || type >= unhandledCounts[series].length) return 0;
+		return unhandledCounts[series][type];
+	}
+	
+	// Retained unhandled objects, oldest first.
+	public LMCPObject[] getRecent() {
+		LMCPObject[] objects = new LMCPObject[recentCount];
+		for (int i = 0; i < recentCount; i++) {
+			objects[i] = recent[(recentNext - recentCount + i + recent.length) % recent.length];
+		}
+		return objects;
+	}
+	
+}
@@ -0,0 +1,413 @@
+package main;
+
+import java.util.Arrays;
+
+// Jump point search over a path map, avoiding hazard points. Moves are to the 8 neighbours, diagonals only when both
+// orthogonal neighbours are open, so routes never clip the corner of a hazard.
+// Recent routes are cached by start and goal, and dropped when the path map changes within their bounds. Searches and the
+// cache reuse their arrays, so once these have grown to the longest routes planning allocates nothing.
+// A planner is not thread safe, use one per planning thread.
+public class PathPlanner {
+	
+	public static final byte BLOCKED = 100;
+	
+	private static final double DIAGONAL = Math.sqrt(2);
+	private static final int CACHE_SIZE = 256;
+	// Searches giving up past this many expanded jump points count as failed, bounding time per plan.
+	private static final int MAX_EXPANSIONS = 20000;
+	
+	private final ByteMap map;
+	
+	private int xPoints;
+	private int yPoints;
+	private long version = -1;
+	private long resizeVersion = -1;
+	
+	// Search state per point, valid only where stamps equal the current search.
+	private int[] stamps = new int[0];
+	private int search = 0;
+	private double[] costs = new double[0];
+	private int[] parents = new int[0];
+	private boolean[] closed = new boolean[0];
+	
+	// Open set, a binary min-heap of points by estimated total cost.
+	private int[] heap = new int[64];
+	private double[] heapKeys = new double[64];
+	private int heapSize = 0;
+	
+	// Cached routes by start << 32 | goal, each held in a slot as xMin, yMin, xMax, yMax then the route points x, y.
+	// A failed search is kept with no points and the bounds of the whole map, so it is retried once anything changes.
+	// When full, the least recently used slot is replaced. Slot arrays are kept when a slot is freed, and reused.
+	private final LongIntMap routeSlots = new LongIntMap(CACHE_SIZE);
+	private final long[] slotKeys = new long[CACHE_SIZE];
+	private final int[][] slotRoutes = new int[CACHE_SIZE][];
+	// Route points held in each slot, x and y counted apart, or -1 for a free slot.
+	private final int[] slotLengths = new int[CACHE_SIZE];
+	private final long[] slotUses = new long[CACHE_SIZE];
+	private long uses = 0;
+	private int cachedRoutes = 0;
+	private final ByteMap.TileVisitor dropChanged = this::dropRoutes;
+	
+	// Targets a drone could not be routed to, as the drone's ID, the caller's key for the target and the goal on the path
+	// map. Each is kept until the path map changes within EXCLUSION_MARGIN of its goal, or resizes. When full, slots
+	// are replaced in turn.
+	private static final int MAX_EXCLUSIONS = 256;
+	private static final int EXCLUSION_MARGIN = DirtyTiles.TILE_SIZE;
+	private final long[] excludedOwners = new long[MAX_EXCLUSIONS];
+	private final long[] excludedTargets = new long[MAX_EXCLUSIONS];
+	private final int[] excludedX = new int[MAX_EXCLUSIONS];
+	private final int[] excludedY = new int[MAX_EXCLUSIONS];
+	private int exclusions = 0;
+	private int nextReplaced = 0;
+	
+	// The last route planned, valid until the next plan.
+	private int[] route = new int[16];
+	// The route found by the last search.
+	private int[] searched = new int[16];
+	
+	private int goalX;
+	private int goalY;
+	private int startX;
+	private int startY;
+	
+	public PathPlanner(ByteMap map) {
+		this.map = map;
+		Arrays.fill(slotLengths, -1);
+	}
+	
+	// Primary Interface Methods
+	
+	// Plans a route from start to goal as turning points x, y, beginning with start and ending with goal, and returns
+	// the number of points, or -1 where no route is found. Start and goal count as open.
+	// The points are read from getRoute(), until the next plan.
+	public int plan(int startX, int startY, int goalX, int goalY) {
+		refresh();
+		startX = clamp(startX, xPoints);
+		startY = clamp(startY, yPoints);
+		goalX = clamp(goalX, xPoints);
+		goalY = clamp(goalY, yPoints);
+		long key = ((long) (startX * yPoints + startY) << 32) | (goalX * yPoints + goalY);
+		int slot = routeSlots.get(key, -1);
+		if (slot < 0) slot = cache(key, search(startX, startY, goalX, goalY));
+		slotUses[slot] = ++uses;
+		int length = slotLengths[slot];
+		if (length == 0) return -1;
+		if (route.length < length) route = new int[Math.max(length, route.length * 2)];
+		System.arraycopy(slotRoutes[slot], 4, route, 0, length);
+		return length / 2;
+	}
+	
+	// Records that owner found no route to target, whose goal on the path map is (x, y).
+	public void exclude(long owner, long target, int x, int y) {
+		int i = 0;
+		while (i < exclusions && (excludedOwners[i] != owner || excludedTargets[i] != target)) i++;
+		if (i == exclusions) {
+			if (exclusions < MAX_EXCLUSIONS) {
+				exclusions++;
+			} else {
+				i = nextReplaced;
+				nextReplaced = (nextReplaced + 1) % MAX_EXCLUSIONS;
+			}
+		}
+		excludedOwners[i] = owner;
+		excludedTargets[i] = target;
+		excludedX[i] = x;
+		excludedY[i] = y;
+	}
+	
+	// Drops cached routes and exclusions near path map tiles changed since the last call, or everything after a resize.
+	public void refresh() {
+		if (resizeVersion != map.getResizeVersion() || xPoints != map.getXPoints() || yPoints != map.getYPoints()) {
+			resizeVersion = map.getResizeVersion();
+			xPoints = map.getXPoints();
+			yPoints = map.getYPoints();
+			int size = xPoints * yPoints;
+			if (stamps.length < size) {
+				stamps = new int[size];
+				costs = new double[size];
+				parents = new int[size];
+				closed = new boolean[size];
+				search = 0;
+			}
+			clearRoutes();
+			exclusions = 0;
+			version = map.getVersion();
+			return;
+		}
+		if (cachedRoutes == 0 && exclusions == 0) {
+			version = map.getVersion();
+			return;
+		}
+		version = map.forEachChangedTile(version, dropChanged);
+	}
+	
+	// Secondary Methods
+	
+	// Stores the searched route of length points, x and y counted apart, or a failure if -1, in a free slot or the least
+	// recently used one. Returns the slot.
+	private int cache(long key, int length) {
+		int slot = 0;
+		if (cachedRoutes < CACHE_SIZE) {
+			while (slotLengths[slot] >= 0) slot++;
+			cachedRoutes++;
+		} else {
+			for (int i = 1; i < CACHE_SIZE; i++) {
+				if (slotUses[i] < slotUses[slot]) slot = i;
+			}
+			routeSlots.remove(slotKeys[slot]);
+		}
+		length = Math.max(length, 0);
+		if (slotRoutes[slot] == null || slotRoutes[slot].length < length + 4) slotRoutes[slot] = new int[Math.max(length + 4, 32)];
+		int[] entry = slotRoutes[slot];
+		if (length == 0) {
+			entry[0] = 0;
+			entry[1] = 0;
+			entry[2] = xPoints - 1;
+			entry[3] = yPoints - 1;
+		} else {
+			entry[0] = entry[2] = searched[0];
+			entry[1] = entry[3] = searched[1];
+			for (int i = 0; i < length; i += 2) {
+				entry[0] = Math.min(entry[0], searched[i]);
+				entry[1] = Math.min(entry[1], searched[i + 1]);
+				entry[2] = Math.max(entry[2], searched[i]);
+				entry[3] = Math.max(entry[3], searched[i + 1]);
+			}
+			System.arraycopy(searched, 0, entry, 4, length);
+		}
+		slotKeys[slot] = key;
+		slotLengths[slot] = length;
+		routeSlots.put(key, slot);
+		return slot;
+	}
+	
+	private void clearRoutes() {
+		routeSlots.clear();
+		Arrays.fill(slotLengths, -1);
+		cachedRoutes = 0;
+	}
+	
+	// Drops cached routes whose bounds touch a changed tile, and exclusions whose goal lies near it.
+	private void dropRoutes(int xStart, int yStart, int xEnd, int yEnd) {
+		for (int slot = 0; slot < CACHE_SIZE; slot++) {
+			int[] entry = slotRoutes[slot];
+			if (slotLengths[slot] < 0 || entry[0] >= xEnd || entry[2] < xStart || entry[1] >= yEnd || entry[3] < yStart) continue;
+			routeSlots.remove(slotKeys[slot]);
+			slotLengths[slot] = -1;
+			cachedRoutes--;
+		}
+		for (int i = exclusions - 1; i >= 0; i--) {
+			if (excludedX[i] < xStart - EXCLUSION_MARGIN || excludedX[i] >= xEnd + EXCLUSION_MARGIN
+					|| excludedY[i] < yStart - EXCLUSION_MARGIN || excludedY[i] >= yEnd + EXCLUSION_MARGIN) continue;
+			exclusions--;
+			excludedOwners[i] = excludedOwners[exclusions];
+			excludedTargets[i] = excludedTargets[exclusions];
+			excludedX[i] = excludedX[exclusions];
+			excludedY[i] = excludedY[exclusions];
+		}
+	}
+	
+	// Searches for a route into searched, returning its length, x and y counted apart, or -1 if there is none.
+	private int search(int startX, int startY, int goalX, int goalY) {
+		this.startX = startX;
+		this.startY = startY;
+		this.goalX = goalX;
+		this.goalY = goalY;
+		if (++search == Integer.MAX_VALUE) {
+			Arrays.fill(stamps, 0);
+			search = 1;
+		}
+		heapSize = 0;
+		int start = startX * yPoints + startY;
+		visit(start, 0, -1);
+		push(start, heuristic(startX, startY));
+		
+		int expansions = 0;
+		while (heapSize > 0 && expansions++ < MAX_EXPANSIONS) {
+			int point = pop();
+			if (closed[point]) continue;
+			closed[point] = true;
+			int x = point / yPoints;
+			int y = point % yPoints;
+			if (x == goalX && y == goalY) return route(point);
+			
+			int parent = parents[point];
+			if (parent < 0) {
+				for (int dx = -1; dx <= 1; dx++) {
+					for (int dy = -1; dy <= 1; dy++) {
+						if ((dx != 0 || dy != 0) && canStep(x, y, dx, dy)) jumpFrom(point, x, y, dx, dy);
+					}
+				}
+				continue;
+			}
+			int dx = Integer.signum(x - parent / yPoints);
+			int dy = Integer.signum(y - parent % yPoints);
+			if (dx != 0 && dy != 0) {
+				if (isOpen(x, y + dy)) jumpFrom(point, x, y, 0, dy);
+				if (isOpen(x + dx, y)) jumpFrom(point, x, y, dx, 0);
+				if (canStep(x, y, dx, dy)) jumpFrom(point, x, y, dx, dy);
+			} else if (dx != 0) {
+				if (isOpen(x + dx, y)) jumpFrom(point, x, y, dx, 0);
+				// Open sides may lead around an obstacle behind, forcing these neighbours.
+				for (int side = -1; side <= 1; side += 2) {
+					if (!isOpen(x, y + side)) continue;
+					jumpFrom(point, x, y, 0, side);
+					if (canStep(x, y, dx, side)) jumpFrom(point, x, y, dx, side);
+				}
+			} else {
+				if (isOpen(x, y + dy)) jumpFrom(point, x, y, 0, dy);
+				for (int side = -1; side <= 1; side += 2) {
+					if (!isOpen(x + side, y)) continue;
+					jumpFrom(point, x, y, side, 0);
+					if (canStep(x, y, side, dy)) jumpFrom(point, x, y, side, dy);
+				}
+			}
+		}
+		return -1;
+	}
+	
+	private void jumpFrom(int point, int x, int y, int dx, int dy) {
+		int jumpPoint = jump(x + dx, y + dy, dx, dy);
+		if (jumpPoint < 0) return;
+		int jx = jumpPoint / yPoints;
+		int jy = jumpPoint % yPoints;
+		double cost = costs[point] + octile(Math.abs(jx - x), Math.abs(jy - y));
+		if (stamps[jumpPoint] == search && (closed[jumpPoint] || costs[jumpPoint] <= cost)) return;
+		visit(jumpPoint, cost, point);
+		push(jumpPoint, cost + heuristic(jx, jy));
+	}
+	
+	// Steps from (x, y) in the direction until a point with a forced neighbour or the goal, or returns -1 at a dead end.
+	private int jump(int x, int y, int dx, int dy) {
+		while (true) {
+			if (!isOpen(x, y)) return -1;
+			if (x == goalX && y == goalY) return x * yPoints + y;
+			if (dx != 0 && dy != 0) {
+				if (jump(x + dx, y, dx, 0) >= 0 || jump(x, y + dy, 0, dy) >= 0) return x * yPoints + y;
+				if (!canStep(x, y, dx, dy)) return -1;
+			} else if (dx != 0) {
+				if ((isOpen(x, y - 1) && !isOpen(x - dx, y - 1)) || (isOpen(x, y + 1) && !isOpen(x - dx, y + 1))) return x * yPoints + y;
+			} else {
+				if ((isOpen(x - 1, y) && !isOpen(x - 1, y - dy)) || (isOpen(x + 1, y) && !isOpen(x + 1, y - dy))) return x * yPoints + y;
+			}
+			x += dx;
+			y += dy;
+		}
+	}
+	
+	private boolean canStep(int x, int y, int dx, int dy) {
+		if (!isOpen(x + dx, y + dy)) return false;
+		return dx == 0 || dy == 0 || (isOpen(x + dx, y) && isOpen(x, y + dy));
+	}
+	
+	private boolean isOpen(int x, int y) {
+		if (x < 0 || y < 0 || x >= xPoints || y >= yPoints) return false;
+		if ((x == startX && y == startY) || (x == goalX && y == goalY)) return true;
+		return map.getValue(x, y) < BLOCKED;
+	}
+	
+	// Writes the jump points from start to goal into searched, leaving out those where the route carries straight on.
+	// Returns the length, x and y counted apart.
+	private int route(int goal) {
+		int length = 0;
+		for (int point = goal, next = -1; point >= 0; next = point, point = parents[point]) {
+			if (isTurn(next, point)) length++;
+		}
+		if (searched.length < length * 2) searched = new int[Math.max(length * 2, searched.length * 2)];
+		for (int point = goal, next = -1, i = length - 1; point >= 0; next = point, point = parents[point]) {
+			if (!isTurn(next, point)) continue;
+			searched[2 * i] = point / yPoints;
+			searched[2 * i + 1] = point % yPoints;
+			i--;
+		}
+		return length * 2;
+	}
+	
+	// Whether the route changes direction at point, coming from its parent and going on to next. The ends always count.
+	private boolean isTurn(int next, int point) {
+		int parent = parents[point];
+		if (next < 0 || parent < 0) return true;
+		int x = point / yPoints;
+		int y = point % yPoints;
+		return Integer.signum(next / yPoints - x) != Integer.signum(x - parent / yPoints)
+				|| Integer.signum(next % yPoints - y) != Integer.signum(y - parent % yPoints);
+	}
+	
+	private void visit(int point, double cost, int parent) {
+		stamps[point] = search;
+		costs[point] = cost;
+		parents[point] = parent;
+		closed[point] = false;
+	}
+	
+	private double heuristic(int x, int y) {
+		return octile(Math.abs(goalX - x), Math.abs(goalY - y));
+	}
+	
+	private static double octile(int dx, int dy) {
+		return Math.max(dx, dy) + (DIAGONAL - 1) * Math.min(dx, dy);
+	}
+	
+	private static int clamp(int value, int points) {
+		return Math.max(0, Math.min(value, points - 1));
+	}
+	
+	private void push(int point, double key) {
+		if (heapSize == heap.length) {
+			heap = Arrays.copyOf(heap, heapSize * 2);
+			heapKeys = Arrays.copyOf(heapKeys, heapSize * 2);
+		}
+		int i = heapSize++;
+		while (i > 0 && key < heapKeys[(i - 1) >> 1]) {
+			heap[i] = heap[(i - 1) >> 1];
+			heapKeys[i] = heapKeys[(i - 1) >> 1];
+			i = (i - 1) >> 1;
+		}
+		heap[i] = point;
+		heapKeys[i] = key;
+	}
+	
+	private int pop() {
+		int top = heap[0];
+		heapSize--;
+		int point = heap[heapSize];
+		double key = heapKeys[heapSize];
+		int i = 0;
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= heapSize) break;
+			if (child + 1 < heapSize && heapKeys[child + 1] < heapKeys[child]) child++;
+			if (heapKeys[child] >= key) break;
+			heap[i] = heap[child];
+			heapKeys[i] = heapKeys[child];
+			i = child;
+		}
+		heap[i] = point;
+		heapKeys[i] = key;
+		return top;
+	}
+	
+	// Getters, Setters
+	
+	public int[] getRoute() {
+		return route;
+	}
+	
+	public int getCachedRoutes() {
+		return cachedRoutes;
+	}
+	
+	// Exclusions as of the last refresh(), read by index below getExclusionCount().
+	public int getExclusionCount() {
+		return exclusions;
+	}
+	
+	public long getExcludedOwner(int i) {
+		return excludedOwners[i];
+	}
+	
+	public long getExcludedTarget(int i) {
+		return excludedTargets[i];
+	}
+	
+}
@@ -0,0 +1,68 @@
+package main;
+
+// Working buffers for one resolution's planning pass. Buffers only grow, doubling when too small, so once the drone
+// and point counts settle a planning pass allocates nothing.
+public class PlanScratch {
+	
+	// Per drone
+	int[] usingDrones = new int[0];
+	int[] xBest = new int[0];
+	int[] yBest = new int[0];
+	double[] scoreBest = new double[0];
+	int[] assignment = new int[0];
+	int[] candidateStart = new int[1];
+	
+	// Per pooled point
+	long[] pointKeys = new long[0];
+	int[] pointCells = new int[0];
+	double[] pointLongitudes = new double[0];
+	double[] pointLatitudes = new double[0];
+	double[] pointValues = new double[0];
+	// Points left out of the current drone's candidates are marked with excludedStamp, which changes per drone.
+	int[] pointExcluded = new int[0];
+	int excludedStamp = 0;
+	final LongIntMap pointIndex = new LongIntMap(64);
+	
+	// Per drone and point
+	int[] candidatePoint = new int[0];
+	double[] candidateScore = new double[0];
+	
+	// Primary Interface Methods
+	
+	public void ensureDrones(int drones) {
+		if (usingDrones.length >= drones) return;
+		int size = grow(usingDrones.length, drones);
+		usingDrones = new int[size];
+		xBest = new int[size];
+		yBest = new int[size];
+		scoreBest = new double[size];
+		assignment = new int[size];
+		candidateStart = new int[size + 1];
+	}
+	
+	public void ensurePoints(int points) {
+		if (pointKeys.length >= points) return;
+		int size = grow(pointKeys.length, points);
+		pointKeys = new long[size];
+		pointCells = new int[size];
+		pointLongitudes = new double[size];
+		pointLatitudes = new double[size];
+		pointValues = new double[size];
+		pointExcluded = new int[size];
+		excludedStamp = 0;
+	}
+	
+	public void ensureCandidates(int candidates) {
+		if (candidatePoint.length >= candidates) return;
+		int size = grow(candidatePoint.length, candidates);
+		candidatePoint = new int[size];
+		candidateScore = new double[size];
+	}
+	
+	// Utility Methods
+	
+	private static int grow(int length, int needed) {
+		return Math.max(needed, Math.max(length * 2, 16));
+	}
+	
+}
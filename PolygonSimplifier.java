@@ -0,0 +1,141 @@
+package main;
+
+import java.util.Arrays;
+
+// Douglas-Peucker simplification of closed loops, driven by a heap so the worst fitting span is always split next.
+// Stops once every dropped vertex is within the tolerance of the outline, or the vertex budget is reached, whichever is first.
+public class PolygonSimplifier {
+	
+	private static final int MIN_VERTICES = 3;
+	
+	// Spans still to be split, a binary max-heap by the distance of their farthest vertex.
+	private double[] heapError = new double[32];
+	private int[] heapStart = new int[32];
+	private int[] heapEnd = new int[32];
+	private int[] heapFarthest = new int[32];
+	private int heapSize = 0;
+	private boolean[] kept = new boolean[0];
+	
+	// Primary Interface Methods
+	
+	// Simplifies a loop of vertices, x then y, writing the indexes of the vertices kept into keptOut in loop order.
+	// Returns the number kept, never more than maxVertices, which must be at least 3.
+	public int simplifyLoop(int[] vertices, double tolerance, int maxVertices, int[] keptOut) {
+		return simplifyLoop(vertices, vertices.length / 2, tolerance, maxVertices, keptOut);
+	}
+	
+	// As above, for a loop of the first count vertices of the array.
+	public int simplifyLoop(int[] vertices, int count, double tolerance, int maxVertices, int[] keptOut) {
+		if (count <= MIN_VERTICES) {
+			for (int i = 0; i < count; i++) keptOut[i] = i;
+			return count;
+		}
+		if (kept.length < count) kept = new boolean[count];
+		Arrays.fill(kept, 0, count, false);
+		
+		// Anchor on the first vertex and the one farthest from it, splitting the loop into two open spans.
+		int far = 0;
+		long farDistance = -1;
+		for (int i = 1; i < count; i++) {
+			long dx = vertices[2 * i] - vertices[0];
+			long dy = vertices[2 * i + 1] - vertices[1];
+			if (dx * dx + dy * dy > farDistance) {
+				farDistance = dx * dx + dy * dy;
+				far = i;
+			}
+		}
+		kept[0] = true;
+		kept[far] = true;
+		int keptCount = 2;
+		heapSize = 0;
+		pushSpan(vertices, count, 0, far);
+		pushSpan(vertices, count, far, count);
+		
+		while (heapSize > 0 && keptCount < maxVertices) {
+			if (heapError[0] <= tolerance && keptCount >= MIN_VERTICES) break;
+			int start = heapStart[0];
+			int end = heapEnd[0];
+			int farthest = heapFarthest[0];
+			pop();
+			kept[farthest % count] = true;
+			keptCount++;
+			pushSpan(vertices, count, start, farthest);
+			pushSpan(vertices, count, farthest, end);
+		}
+		
+		int found = 0;
+		for (int i = 0; i < count; i++) {
+			if (kept[i]) keptOut[found++] = i;
+		}
+		return found;
+	}
+	
+	// Secondary Methods
+	
+	// Span from start to end, where end may be count to stand for vertex 0 again.
+	private void pushSpan(int[] vertices, int count, int start, int end) {
+		if (end - start < 2) return;
+		int e = end % count;
+		double x1 = vertices[2 * start], y1 = vertices[2 * start + 1];
+		double dx = vertices[2 * e] - x1, dy = vertices[2 * e + 1] - y1;
+		double length = Math.hypot(dx, dy);
+		double maxError = -1;
+		int farthest = start + 1;
+		for (int i = start + 1; i < end; i++) {
+			double px = vertices[2 * i] - x1, py = vertices[2 * i + 1] - y1;
+			double error = length == 0 ? Math.hypot(px, py) : Math.abs(dx * py - dy * px) / length;
+			if (error > maxError) {
+				maxError = error;
+				farthest = i;
+			}
+		}
+		push(maxError, start, end, farthest);
+	}
+	
+	private void push(double error, int start, int end, int farthest) {
+		if (heapSize == heapError.length) {
+			heapError = Arrays.copyOf(heapError, heapSize * 2);
+			heapStart = Arrays.copyOf(heapStart, heapSize * 2);
+			heapEnd = Arrays.copyOf(heapEnd, heapSize * 2);
+			heapFarthest = Arrays.copyOf(heapFarthest, heapSize * 2);
+		}
+		int i = heapSize++;
+		set(i, error, start, end, farthest);
+		while (i > 0 && heapError[i] > heapError[(i - 1) >> 1]) {
+			swap(i, (i - 1) >> 1);
+			i = (i - 1) >> 1;
+		}
+	}
+	
+	private void pop() {
+		heapSize--;
+		if (heapSize == 0) return;
+		set(0, heapError[heapSize], heapStart[heapSize], heapEnd[heapSize], heapFarthest[heapSize]);
+		int i = 0;
+		while (true) {
+			int best = i;
+			int left = 2 * i + 1;
+			int right = left + 1;
+			if (left < heapSize && heapError[left] > heapError[best]) best = left;
+			if (right < heapSize && heapError[right] > heapError[best]) best = right;
+			if (best == i) return;
+			swap(i, best);
+			i = best;
+		}
+	}
+	
+	private void set(int i, double error, int start, int end, int farthest) {
+		heapError[i] = error;
+		heapStart[i] = start;
+		heapEnd[i] = end;
+		heapFarthest[i] = farthest;
+	}
+	
+	private void swap(int a, int b) {
+		double error = heapError[a];
+		int start = heapStart[a], end = heapEnd[a], farthest = heapFarthest[a];
+		set(a, heapError[b], heapStart[b], heapEnd[b], heapFarthest[b]);
+		set(b, error, start, end, farthest);
+	}
+	
+}
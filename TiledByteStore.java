@@ -0,0 +1,235 @@
+package main;
+
+// Author: Kevin Wang
+
+// Unbounded store made of fixed size tiles, each allocated the first time a non-zero value is written into it.
+// Map indexes are offset by an origin, so growing the map on any side only moves the origin and bounds, nothing is copied.
+// Only this store is sparse. Listeners on a map built on it keep their own dense arrays.
+public class TiledByteStore implements ByteStore {
+	
+	private static final int TILE_SHIFT = 4;
+	private static final int TILE_SIZE = 1 << TILE_SHIFT;
+	private static final int TILE_MASK = TILE_SIZE - 1;
+	
+	// Logical size, and the absolute position of map index (0, 0).
+	private int xPoints;
+	private int yPoints;
+	private int xOrigin = 0;
+	private int yOrigin = 0;
+	
+	// Tile directory covering absolute tiles [dirX, dirX + dirWidth) x [dirY, dirY + dirHeight).
+	private byte[][] tiles;
+	private int dirX = 0;
+	private int dirY = 0;
+	private int dirWidth;
+	private int dirHeight;
+	
+	public TiledByteStore(int xPoints, int yPoints) {
+		this.xPoints = xPoints;
+		this.yPoints = yPoints;
+		dirWidth = Math.max(1, (xPoints + TILE_MASK) >> TILE_SHIFT);
+		dirHeight = Math.max(1, (yPoints + TILE_MASK) >> TILE_SHIFT);
+		tiles = new byte[dirWidth * dirHeight][];
+	}
+	
+	// Primary Interface Methods
+	
+	public byte get(int x, int y) {
+		int ax = x + xOrigin;
+		int ay = y + yOrigin;
+		byte[] tile = getTile(ax >> TILE_SHIFT, ay >> TILE_SHIFT);
+		if (tile == null) return 0;
+		return tile[((ax & TILE_MASK) << TILE_SHIFT) | (ay & TILE_MASK)];
+	}
+	
+	public void set(int x, int y, byte value) {
+		int ax = x + xOrigin;
+		int ay = y + yOrigin;
+		byte[] tile = value == 0 ? getTile(ax >> TILE_SHIFT, ay >> TILE_SHIFT) : allocateTile(ax >> TILE_SHIFT, ay >> TILE_SHIFT);
+		if (tile == null) return;
+		tile[((ax & TILE_MASK) << TILE_SHIFT) | (ay & TILE_MASK)] = value;
+	}
+	
+	public void fill(int xStart, int yStart, int xEnd, int yEnd, byte value) {
+		if (xStart >= xEnd || yStart >= yEnd) return;
+		int axStart = xStart + xOrigin, axEnd = xEnd + xOrigin;
+		int ayStart = yStart + yOrigin, ayEnd = yEnd + yOrigin;
+		for (int tx = axStart >> TILE_SHIFT; tx <= (axEnd - 1) >> TILE_SHIFT; tx++) {
+			for (int ty = ayStart >> TILE_SHIFT; ty <= (ayEnd - 1) >> TILE_SHIFT; ty++) {
+				byte[] tile = value == 0 ? getTile(tx, ty) : allocateTile(tx, ty);
+				if (tile == null) continue;
+				int lxStart = Math.max(axStart - (tx << TILE_SHIFT), 0), lxEnd = Math.min(axEnd - (tx << TILE_SHIFT), TILE_SIZE);
+				int lyStart = Math.max(ayStart - (ty << TILE_SHIFT), 0), lyEnd = Math.min(ayEnd - (ty << TILE_SHIFT), TILE_SIZE);
+				for (int lx = lxStart; lx < lxEnd; lx++) {
+					for (int i = (lx << TILE_SHIFT) + lyStart; i < (lx << TILE_SHIFT) + lyEnd; i++) {
+						tile[i] = value;
+					}
+				}
+			}
+		}
+	}
+	
+	public void fillIfBelow(int xStart, int yStart, int xEnd, int yEnd, byte value, byte below) {
+		if (xStart >= xEnd || yStart >= yEnd) return;
+		int axStart = xStart + xOrigin, axEnd = xEnd + xOrigin;
+		int ayStart = yStart + yOrigin, ayEnd = yEnd + yOrigin;
+		boolean changesEmpty = 0 < below && value != 0;
+		for (int tx = axStart >> TILE_SHIFT; tx <= (axEnd - 1) >> TILE_SHIFT; tx++) {
+			for (int ty = ayStart >> TILE_SHIFT; ty <= (ayEnd - 1) >> TILE_SHIFT; ty++) {
+				byte[] tile = changesEmpty ? allocateTile(tx, ty) : getTile(tx, ty);
+				if (tile == null) continue;
+				int lxStart = Math.max(axStart - (tx << TILE_SHIFT), 0), lxEnd = Math.min(axEnd - (tx << TILE_SHIFT), TILE_SIZE);
+				int lyStart = Math.max(ayStart - (ty << TILE_SHIFT), 0), lyEnd = Math.min(ayEnd - (ty << TILE_SHIFT), TILE_SIZE);
+				for (int lx = lxStart; lx < lxEnd; lx++) {
+					for (int i = (lx << TILE_SHIFT) + lyStart; i < (lx << TILE_SHIFT) + lyEnd; i++) {
+						if (tile[i] < below) tile[i] = value;
+					}
+				}
+			}
+		}
+	}
+	
+	public int sum(int xStart, int yStart, int xEnd, int yEnd) {
+		if (xStart >= xEnd || yStart >= yEnd) return 0;
+		int total = 0;
+		int axStart = xStart + xOrigin, axEnd = xEnd + xOrigin;
+		int ayStart = yStart + yOrigin, ayEnd = yEnd + yOrigin;
+		for (int tx = axStart >> TILE_SHIFT; tx <= (axEnd - 1) >> TILE_SHIFT; tx++) {
+			for (int ty = ayStart >> TILE_SHIFT; ty <= (ayEnd - 1) >> TILE_SHIFT; ty++) {
+				byte[] tile = getTile(tx, ty);
+				if (tile == null) continue;
+				int lxStart = Math.max(axStart - (tx << TILE_SHIFT), 0), lxEnd = Math.min(axEnd - (tx << TILE_SHIFT), TILE_SIZE);
+				int lyStart = Math.max(ayStart - (ty << TILE_SHIFT), 0), lyEnd = Math.min(ayEnd - (ty << TILE_SHIFT), TILE_SIZE);
+				for (int lx = lxStart; lx < lxEnd; lx++) {
+					for (int i = (lx << TILE_SHIFT) + lyStart; i < (lx << TILE_SHIFT) + lyEnd; i++) {
+						total += tile[i];
+					}
+				}
+			}
+		}
+		return total;
+	}
+	
+	public void incrementBelow(byte value) {
+		// Untouched tiles read as zero, so they only need allocating when zero itself would change.
+		if (0 < value) allocateAll();
+		for (int i = 0; i < tiles.length; i++) {
+			byte[] tile = tiles[i];
+			if (tile == null) continue;
+			for (int j = 0; j < tile.length; j++) {
+				if (tile[j] < value) tile[j] += 1;
+			}
+		}
+		clearOutside();
+	}
+	
+	public void decrementAbove(byte value) {
+		if (0 > value) allocateAll();
+		for (int i = 0; i < tiles.length; i++) {
+			byte[] tile = tiles[i];
+			if (tile == null) continue;
+			for (int j = 0; j < tile.length; j++) {
+				if (tile[j] > value) tile[j] -= 1;
+			}
+		}
+		clearOutside();
+	}
+	
+	public void resize(int xChange, int yChange) {
+		if (xChange < 0) xOrigin += xChange;
+		if (yChange < 0) yOrigin += yChange;
+		xPoints += Math.abs(xChange);
+		yPoints += Math.abs(yChange);
+	}
+	
+	// Secondary Methods
+	
+	private byte[] getTile(int tx, int ty) {
+		int dx = tx - dirX;
+		int dy = ty - dirY;
+		if (dx < 0 || dy < 0 || dx >= dirWidth || dy >= dirHeight) return null;
+		return tiles[dx * dirHeight + dy];
+	}
+	
+	private byte[] allocateTile(int tx, int ty) {
+		if (tx < dirX || ty < dirY || tx >= dirX + dirWidth || ty >= dirY + dirHeight) {
+			growDirectory(tx, ty);
+		}
+		int index = (tx - dirX) * dirHeight + (ty - dirY);
+		byte[] tile = tiles[index];
+		if (tile == null) {
+			tile = new byte[TILE_SIZE * TILE_SIZE];
+			tiles[index] = tile;
+		}
+		return tile;
+	}
+	
+	// Grows the directory to include the tile, at least doubling on the side that grows so growth stays amortised O(1).
+	private void growDirectory(int tx, int ty) {
+		int newDirX = dirX, newDirY = dirY;
+		int newDirXEnd = dirX + dirWidth, newDirYEnd = dirY + dirHeight;
+		if (tx < dirX) newDirX = Math.min(tx, dirX - dirWidth);
+		if (tx >= newDirXEnd) newDirXEnd = Math.max(tx + 1, newDirXEnd + dirWidth);
+		if (ty < dirY) newDirY = Math.min(ty, dirY - dirHeight);
+		if (ty >= newDirYEnd) newDirYEnd = Math.max(ty + 1, newDirYEnd + dirHeight);
+		int newWidth = newDirXEnd - newDirX;
+		int newHeight = newDirYEnd - newDirY;
+		byte[][] newTiles = new byte[newWidth * newHeight][];
+		for (int dx = 0; dx < dirWidth; dx++) {
+			System.arraycopy(tiles, dx * dirHeight, newTiles, (dx + dirX - newDirX) * newHeight + (dirY - newDirY), dirHeight);
+		}
+		tiles = newTiles;
+		dirX = newDirX;
+		dirY = newDirY;
+		dirWidth = newWidth;
+		dirHeight = newHeight;
+	}
+	
+	private void allocateAll() {
+		for (int tx = xOrigin >> TILE_SHIFT; tx <= (xOrigin + xPoints - 1) >> TILE_SHIFT; tx++) {
+			for (int ty = yOrigin >> TILE_SHIFT; ty <= (yOrigin + yPoints - 1) >> TILE_SHIFT; ty++) {
+				allocateTile(tx, ty);
+			}
+		}
+	}
+	
+	// Points outside the map bounds must stay zero, so that growing the map exposes empty points.
+	private void clearOutside() {
+		for (int dx = 0; dx < dirWidth; dx++) {
+			for (int dy = 0; dy < dirHeight; dy++) {
+				byte[] tile = tiles[dx * dirHeight + dy];
+				if (tile == null) continue;
+				int xBase = (dx + dirX) << TILE_SHIFT;
+				int yBase = (dy + dirY) << TILE_SHIFT;
+				if (xBase >= xOrigin && yBase >= yOrigin && xBase + TILE_SIZE <= xOrigin + xPoints && yBase + TILE_SIZE <= yOrigin + yPoints) continue;
+				for (int lx = 0; lx < TILE_SIZE; lx++) {
+					for (int ly = 0; ly < TILE_SIZE; ly++) {
+						int ax = xBase + lx, ay = yBase + ly;
+						if (ax < xOrigin || ay < yOrigin || ax >= xOrigin + xPoints || ay >= yOrigin + yPoints) {
+							tile[(lx << TILE_SHIFT) | ly] = 0;
+						}
+					}
+				}
+			}
+		}
+	}
+	
+	// Getters, Setters
+	
+	public int getXPoints() {
+		return xPoints;
+	}
+	
+	public int getYPoints() {
+		return yPoints;
+	}
+	
+	public int getAllocatedTiles() {
+		int count = 0;
+		for (int i = 0; i < tiles.length; i++) {
+			if (tiles[i] != null) count++;
+		}
+		return count;
+	}
+	
+}
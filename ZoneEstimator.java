@@ -0,0 +1,140 @@
+package main;
+
+import java.util.Arrays;
+
+// Streaming estimates of how each hazard zone grows and moves, from samples of its centroid and extent taken each tick.
+// Each zone keeps exponentially weighted least squares sums of centroid and extent against time, so a sample costs O(1),
+// memory per zone is fixed and no history is kept. Older samples fade with TIME_CONSTANT. A zone not sampled in a round
+// has merged into another or gone, and its slot is freed.
+public class ZoneEstimator {
+	
+	// Seconds for a sample's weight to fall by a factor of e.
+	private static final double TIME_CONSTANT = 60;
+	private static final double METRES_PER_DEGREE = 111320;
+	
+	private static final int WEIGHT = 0, T = 1, TT = 2, X = 3, TX = 4, Y = 5, TY = 6, R = 7, TR = 8, SUMS = 9;
+	
+	// Zone label to slot. Slot arrays are packed, SUMS values per slot.
+	private final LongIntMap slots = new LongIntMap(16);
+	private int slotCount = 0;
+	private int[] zones = new int[8];
+	private boolean[] sampled = new boolean[8];
+	private long[] originTimes = new long[8];
+	private double[] originLongitudes = new double[8];
+	private double[] originLatitudes = new double[8];
+	private double[] lastTimes = new double[8];
+	private double[] sums = new double[8 * SUMS];
+	
+	// Primary Interface Methods
+	
+	// Adds a sample of a zone's centroid, and its extent in metres from the centroid to the front, at the time in milliseconds.
+	public void addSample(int zone, double longitude, double latitude, double extent, long time) {
+		int slot = slots.get(zone, -1);
+		if (slot < 0) slot = addSlot(zone, longitude, latitude, time);
+		sampled[slot] = true;
+		
+		double t = (time - originTimes[slot]) / 1000d;
+		int base = slot * SUMS;
+		if (t > lastTimes[slot]) {
+			double decay = Math.exp((lastTimes[slot] - t) / TIME_CONSTANT);
+			for (int i = base; i < base + SUMS; i++) {
+				sums[i] *= decay;
+			}
+			lastTimes[slot] = t;
+		}
+		double x = (longitude - originLongitudes[slot]) * METRES_PER_DEGREE * Math.cos(Math.toRadians(originLatitudes[slot]));
+		double y = (latitude - originLatitudes[slot]) * METRES_PER_DEGREE;
+		// The rate of change of the extent is the outward speed of the front.
+		double r = extent;
+		sums[base + WEIGHT] += 1;
+		sums[base + T] += t;
+		sums[base + TT] += t * t;
+		sums[base + X] += x;
+		sums[base + TX] += t * x;
+		sums[base + Y] += y;
+		sums[base + TY] += t * y;
+		sums[base + R] += r;
+		sums[base + TR] += t * r;
+	}
+	
+	// Ends a round of samples, freeing the slots of zones that were not sampled in it.
+	public void removeUnsampled() {
+		// Working down, the last slot moved into a freed one has already been seen.
+		for (int slot = slotCount - 1; slot >= 0; slot--) {
+			if (sampled[slot]) {
+				sampled[slot] = false;
+			} else {
+				removeSlot(slot);
+			}
+		}
+	}
+	
+	// Secondary Methods
+	
+	private int addSlot(int zone, double longitude, double latitude, long time) {
+		int slot = slotCount++;
+		if (slot == originTimes.length) {
+			int capacity = slot * 2;
+			zones = Arrays.copyOf(zones, capacity);
+			sampled = Arrays.copyOf(sampled, capacity);
+			originTimes = Arrays.copyOf(originTimes, capacity);
+			originLongitudes = Arrays.copyOf(originLongitudes, capacity);
+			originLatitudes = Arrays.copyOf(originLatitudes, capacity);
+			lastTimes = Arrays.copyOf(lastTimes, capacity);
+			sums = Arrays.copyOf(sums, capacity * SUMS);
+		}
+		slots.put(zone, slot);
+		zones[slot] = zone;
+		originTimes[slot] = time;
+		originLongitudes[slot] = longitude;
+		originLatitudes[slot] = latitude;
+		lastTimes[slot] = 0;
+		Arrays.fill(sums, slot * SUMS, (slot + 1) * SUMS, 0);
+		return slot;
+	}
+	
+	// Frees a slot, moving the last slot into it to keep them packed.
+	private void removeSlot(int slot) {
+		slots.remove(zones[slot]);
+		int last = --slotCount;
+		if (slot == last) return;
+		zones[slot] = zones[last];
+		sampled[slot] = sampled[last];
+		originTimes[slot] = originTimes[last];
+		originLongitudes[slot] = originLongitudes[last];
+		originLatitudes[slot] = originLatitudes[last];
+		lastTimes[slot] = lastTimes[last];
+		System.arraycopy(sums, last * SUMS, sums, slot * SUMS, SUMS);
+		slots.put(zones[slot], slot);
+	}
+	
+	// Weighted least squares slope of the value sums against time, 0 until samples span some time.
+	private double slope(int zone, int value, int timeValue) {
+		int slot = slots.get(zone, -1);
+		if (slot < 0) return 0;
+		int base = slot * SUMS;
+		double weight = sums[base + WEIGHT];
+		double variance = weight * sums[base + TT] - sums[base + T] * sums[base + T];
+		if (variance <= 1e-9 * weight * weight) return 0;
+		return (weight * sums[base + timeValue] - sums[base + T] * sums[base + value]) / variance;
+	}
+	
+	// Getters, Setters
+	
+	// Outward speed of the zone front in metres per second, negative while it shrinks.
+	public float getGrowthRate(int zone) {
+		return (float) slope(zone, R, TR);
+	}
+	
+	// Direction the zone is moving in, degrees clockwise from north.
+	public float getDirection(int zone) {
+		double direction = Math.toDegrees(Math.atan2(slope(zone, X, TX), slope(zone, Y, TY)));
+		return (float) (direction < 0 ? direction + 360 : direction);
+	}
+	
+	// Speed the zone is moving at in metres per second.
+	public float getSpeed(int zone) {
+		return (float) Math.hypot(slope(zone, X, TX), slope(zone, Y, TY));
+	}
+	
+}
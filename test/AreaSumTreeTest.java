@@ -0,0 +1,70 @@
+package main;
+
+import java.util.Random;
+
+// Runs random point, area, convex and whole map writes and resizes on a map, and checks the sums of random rectangles read
+// from its AreaSumTree against sums of the points themselves after each one.
+public class AreaSumTreeTest {
+	
+	private static final int OPERATIONS = 3000;
+	
+	public static void main(String[] args) {
+		Random random = new Random(7);
+		ByteMap map = new ByteMap(0, 0, 1, 1, new ArrayByteStore(37, 29));
+		double[] longitudes = new double[3];
+		double[] latitudes = new double[3];
+		int sums = 0;
+		for (int operation = 0; operation < OPERATIONS; operation++) {
+			int x = random.nextInt(map.getXPoints());
+			int y = random.nextInt(map.getYPoints());
+			byte value = (byte) (random.nextInt(256) - 128);
+			switch (random.nextInt(8)) {
+			case 0:
+			case 1:
+				map.put(x, y, value);
+				break;
+			case 2:
+				map.setArea(x, y, x + random.nextInt(9), y + random.nextInt(9), value);
+				break;
+			case 3:
+				map.setAreaIfBelow(random.nextDouble(), random.nextDouble(), random.nextDouble(), random.nextDouble(), value, (byte) 40);
+				break;
+			case 4:
+				for (int i = 0; i < 3; i++) {
+					longitudes[i] = random.nextDouble();
+					latitudes[i] = random.nextDouble();
+				}
+				map.setConvexIfBelow(longitudes, latitudes, 3, value, (byte) 60);
+				break;
+			case 5:
+				map.incrementBelowValue(value);
+				break;
+			case 6:
+				map.decrementAboveValue(value);
+				break;
+			default:
+				if (operation % 100 == 7) map.resize(random.nextInt(5) - 2, random.nextInt(5) - 2);
+			}
+			for (int i = 0; i < 4; i++) {
+				int xStart = random.nextInt(map.getXPoints() + 1);
+				int yStart = random.nextInt(map.getYPoints() + 1);
+				int xEnd = xStart + random.nextInt(map.getXPoints() - xStart + 1);
+				int yEnd = yStart + random.nextInt(map.getYPoints() - yStart + 1);
+				int total = 0;
+				for (int px = xStart; px < xEnd; px++) {
+					for (int py = yStart; py < yEnd; py++) {
+						total += map.getValue(px, py);
+					}
+				}
+				int sum = map.areaSums.sum(xStart, yStart, xEnd, yEnd);
+				if (sum != total) {
+					throw new AssertionError("After operation " + operation + " the tree summed " + sum + " over [" + xStart + ", " + xEnd
+							+ ") x [" + yStart + ", " + yEnd + "), the points " + total);
+				}
+				sums++;
+			}
+		}
+		System.out.println("PASSED: " + sums + " rectangle sums matched over " + OPERATIONS + " map changes");
+	}
+	
+}
@@ -0,0 +1,100 @@
+package main;
+
+import java.util.Random;
+
+// Runs one assigner over a series of random sparse problems sharing point keys, so prices carry between calls, and checks
+// each assignment against a brute force search: every drone on one of its own candidates, no point taken twice, as many
+// drones assigned as possible and then the highest total score. Scores are whole numbers, so an auction total within
+// drones * epsilon of the best must equal it.
+public class AuctionAssignerTest {
+	
+	private static final int PROBLEMS = 3000;
+	
+	private static int bestCount;
+	private static double bestTotal;
+	
+	public static void main(String[] args) {
+		Random random = new Random(10);
+		AuctionAssigner assigner = new AuctionAssigner();
+		int[] assignment = new int[8];
+		for (int problem = 0; problem < PROBLEMS; problem++) {
+			int drones = 1 + random.nextInt(7);
+			int points = 1 + random.nextInt(9);
+			long[] pointKeys = new long[points];
+			// Keys come from a small pool, so most points were priced by earlier calls.
+			for (int j = 0; j < points; j++) {
+				pointKeys[j] = j + random.nextInt(3);
+			}
+			for (int j = 0; j < points; j++) {
+				for (int k = 0; k < j; k++) {
+					if (pointKeys[k] == pointKeys[j]) pointKeys[j] = 100 + j;
+				}
+			}
+			int[] candidateStart = new int[drones + 1];
+			int[] candidatePoint = new int[drones * points];
+			double[] candidateScore = new double[drones * points];
+			int candidates = 0;
+			for (int i = 0; i < drones; i++) {
+				candidateStart[i] = candidates;
+				for (int j = 0; j < points; j++) {
+					if (random.nextInt(3) == 0) continue;
+					candidatePoint[candidates] = j;
+					candidateScore[candidates] = random.nextInt(41) - 20;
+					candidates++;
+				}
+			}
+			candidateStart[drones] = candidates;
+			
+			assigner.assign(drones, candidateStart, candidatePoint, candidateScore, pointKeys, points, assignment);
+			int count = 0;
+			double total = 0;
+			boolean[] taken = new boolean[points];
+			for (int i = 0; i < drones; i++) {
+				if (assignment[i] < 0) continue;
+				double score = scoreOf(i, assignment[i], candidateStart, candidatePoint, candidateScore);
+				if (Double.isNaN(score) || taken[assignment[i]]) {
+					throw new AssertionError("Problem " + problem + " gave drone " + i + " point " + assignment[i] + ", which it cannot take");
+				}
+				taken[assignment[i]] = true;
+				count++;
+				total += score;
+			}
+			bestCount = -1;
+			bestTotal = 0;
+			search(0, drones, candidateStart, candidatePoint, candidateScore, new boolean[points], 0, 0);
+			if (count != bestCount || total != bestTotal) {
+				throw new AssertionError("Problem " + problem + " assigned " + count + " drones scoring " + total + ", the best is "
+						+ bestCount + " scoring " + bestTotal);
+			}
+		}
+		System.out.println("PASSED: " + PROBLEMS + " assignments were optimal");
+	}
+	
+	// Score of a drone taking a point, or NaN if the point is not one of its candidates.
+	private static double scoreOf(int drone, int point, int[] candidateStart, int[] candidatePoint, double[] candidateScore) {
+		for (int k = candidateStart[drone]; k < candidateStart[drone + 1]; k++) {
+			if (candidatePoint[k] == point) return candidateScore[k];
+		}
+		return Double.NaN;
+	}
+	
+	private static void search(int drone, int drones, int[] candidateStart, int[] candidatePoint, double[] candidateScore,
+			boolean[] taken, int count, double total) {
+		if (drone == drones) {
+			if (count > bestCount || (count == bestCount && total > bestTotal)) {
+				bestCount = count;
+				bestTotal = total;
+			}
+			return;
+		}
+		search(drone + 1, drones, candidateStart, candidatePoint, candidateScore, taken, count, total);
+		for (int k = candidateStart[drone]; k < candidateStart[drone + 1]; k++) {
+			int point = candidatePoint[k];
+			if (taken[point]) continue;
+			taken[point] = true;
+			search(drone + 1, drones, candidateStart, candidatePoint, candidateScore, taken, count + 1, total + candidateScore[k]);
+			taken[point] = false;
+		}
+	}
+	
+}
@@ -0,0 +1,106 @@
+package main;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.Random;
+
+// Streams a changing map through ByteMapEncoder and ByteMapDecoder and checks the decoded copy matches it after every
+// frame. The map is written to between frames and grows on both sides, including its low sides, which shifts its origin.
+public class ByteMapCodecTest {
+	
+	private static final int FRAMES = 200;
+	
+	public static void main(String[] args) throws Exception {
+		Random random = new Random(9);
+		ByteMap map = new ByteMap(-120, 35, 0.1, 0.1, 20, 30);
+		scribble(map, random, 200);
+		ByteMapEncoder encoder = new ByteMapEncoder();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		
+		encoder.writeFrame(map, out);
+		ByteMap copy = ByteMapDecoder.readNewMap(input(bytes));
+		compare(map, copy, "first key frame");
+		
+		int keyFrames = 1;
+		int resizes = 0;
+		for (int frame = 1; frame < FRAMES; frame++) {
+			if (frame % 10 == 5) {
+				// Alternate low side, high side and mixed growth.
+				int xChange = random.nextInt(7) - 3;
+				int yChange = random.nextInt(7) - 3;
+				if (frame % 30 == 5) {
+					xChange = -Math.abs(xChange) - 1;
+					yChange = -Math.abs(yChange) - 1;
+				}
+				map.resize(xChange, yChange);
+				resizes++;
+			}
+			scribble(map, random, random.nextInt(50));
+			bytes.reset();
+			if (frame % 25 == 0) {
+				encoder.writeKeyFrame(map, out);
+				keyFrames++;
+			} else {
+				encoder.writeFrame(map, out);
+			}
+			DataInputStream in = input(bytes);
+			ByteMapDecoder.readFrame(in, copy);
+			if (in.available() != 0) {
+				throw new AssertionError("Frame " + frame + " left " + in.available() + " bytes unread");
+			}
+			compare(map, copy, "frame " + frame);
+		}
+		
+		// An unchanged map costs a single run.
+		bytes.reset();
+		encoder.writeFrame(map, out);
+		int header = 1 + 4 * 8 + 2 * 4 + 2 * 4;
+		if (bytes.size() > header + 5) {
+			throw new AssertionError("Delta of an unchanged map took " + (bytes.size() - header) + " body bytes");
+		}
+		ByteMapDecoder.readFrame(input(bytes), copy);
+		compare(map, copy, "unchanged frame");
+		
+		System.out.println("PASSED: " + FRAMES + " frames, " + keyFrames + " key frames and " + resizes + " resizes decoded exactly");
+	}
+	
+	// Writes count random points, mostly small values so runs of equal deltas occur.
+	private static void scribble(ByteMap map, Random random, int count) {
+		for (int i = 0; i < count; i++) {
+			byte value = (byte) (random.nextBoolean() ? random.nextInt(4) : random.nextInt(256));
+			map.put(random.nextInt(map.getXPoints()), random.nextInt(map.getYPoints()), value);
+		}
+		if (random.nextInt(4) == 0) {
+			int x = random.nextInt(map.getXPoints());
+			int y = random.nextInt(map.getYPoints());
+			map.setArea(x, y, x + 8, y + 8, (byte) (random.nextInt(200) - 100));
+		}
+	}
+	
+	private static DataInputStream input(ByteArrayOutputStream bytes) {
+		return new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+	}
+	
+	private static void compare(ByteMap map, ByteMap copy, String after) {
+		if (copy.getXPoints() != map.getXPoints() || copy.getYPoints() != map.getYPoints()) {
+			throw new AssertionError("After " + after + " the copy is " + copy.getXPoints() + "x" + copy.getYPoints()
+					+ ", the map " + map.getXPoints() + "x" + map.getYPoints());
+		}
+		if (copy.getInitLongitude() != map.getInitLongitude() || copy.getInitLatitude() != map.getInitLatitude()
+				|| copy.getLongitude() != map.getLongitude() || copy.getLatitude() != map.getLatitude()) {
+			throw new AssertionError("After " + after + " the copy's bounds differ from the map's");
+		}
+		for (int x = 0; x < map.getXPoints(); x++) {
+			for (int y = 0; y < map.getYPoints(); y++) {
+				if (copy.getValue(x, y) != map.getValue(x, y)) {
+					throw new AssertionError("After " + after + " point " + x + "," + y + " decoded as " + copy.getValue(x, y)
+							+ ", the map holds " + map.getValue(x, y));
+				}
+			}
+		}
+	}
+	
+}
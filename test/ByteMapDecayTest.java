@@ -0,0 +1,95 @@
+package main;
+
+import java.util.Random;
+
+// Runs the same random writes on a map with lazy decay and on one decayed eagerly, by incrementBelowValue(-20) then
+// decrementAboveValue(50) every tick, and checks every point and area total agrees after each tick. Writes cover single points,
+// bulk fills and convex fills, the lazy map is settled whole or in part now and then, and both maps grow on every side.
+public class ByteMapDecayTest {
+	
+	private static final int TICKS = 400;
+	
+	public static void main(String[] args) {
+		Random random = new Random(6);
+		ByteMap lazy = new ByteMap(-120, 35, 0.1, 0.1, new TiledByteStore(40, 30));
+		ByteMap eager = new ByteMap(-120, 35, 0.1, 0.1, new ArrayByteStore(40, 30));
+		lazy.setDecay((byte) -20, (byte) 50);
+		double[] longitudes = new double[3];
+		double[] latitudes = new double[3];
+		for (int tick = 0; tick < TICKS; tick++) {
+			int writes = random.nextInt(8);
+			for (int i = 0; i < writes; i++) {
+				double longitude = lazy.getInitLongitude() + random.nextDouble() * lazy.getLongitude();
+				double latitude = lazy.getInitLatitude() + random.nextDouble() * lazy.getLatitude();
+				byte value = (byte) (random.nextInt(256) - 128);
+				switch (random.nextInt(5)) {
+				case 0:
+				case 1:
+					lazy.setPoint(longitude, latitude, value);
+					eager.setPoint(longitude, latitude, value);
+					break;
+				case 2:
+					lazy.setArea(longitude, latitude, longitude + 0.02, latitude + 0.03, value);
+					eager.setArea(longitude, latitude, longitude + 0.02, latitude + 0.03, value);
+					break;
+				case 3:
+					lazy.setAreaIfBelow(longitude, latitude, longitude + 0.03, latitude + 0.02, (byte) -50, (byte) 80);
+					eager.setAreaIfBelow(longitude, latitude, longitude + 0.03, latitude + 0.02, (byte) -50, (byte) 80);
+					break;
+				default:
+					longitudes[0] = longitude;
+					latitudes[0] = latitude;
+					longitudes[1] = longitude + 0.03;
+					latitudes[1] = latitude + 0.01;
+					longitudes[2] = longitude + 0.01;
+					latitudes[2] = latitude + 0.04;
+					lazy.setConvexIfBelow(longitudes, latitudes, 3, value, (byte) 80);
+					eager.setConvexIfBelow(longitudes, latitudes, 3, value, (byte) 80);
+				}
+			}
+			if (tick % 50 == 25) {
+				int xChange = random.nextInt(5) - 2;
+				int yChange = random.nextInt(5) - 2;
+				lazy.resize(xChange, yChange);
+				eager.resize(xChange, yChange);
+			}
+			if (tick % 7 == 0) lazy.settle();
+			if (tick % 5 == 0) {
+				int x = random.nextInt(lazy.getXPoints());
+				int y = random.nextInt(lazy.getYPoints());
+				lazy.settle(x, y, Math.min(x + 9, lazy.getXPoints()), Math.min(y + 9, lazy.getYPoints()));
+			}
+			
+			lazy.age();
+			eager.incrementBelowValue((byte) -20);
+			eager.decrementAboveValue((byte) 50);
+			compare(lazy, eager, random, tick);
+		}
+		System.out.println("PASSED: lazy decay matched eager decay over " + TICKS + " ticks");
+	}
+	
+	private static void compare(ByteMap lazy, ByteMap eager, Random random, int tick) {
+		if (lazy.getXPoints() != eager.getXPoints() || lazy.getYPoints() != eager.getYPoints()) {
+			throw new AssertionError("After tick " + tick + " the maps differ in size");
+		}
+		for (int x = 0; x < eager.getXPoints(); x++) {
+			for (int y = 0; y < eager.getYPoints(); y++) {
+				if (lazy.getValue(x, y) != eager.getValue(x, y)) {
+					throw new AssertionError("After tick " + tick + " point " + x + "," + y + " decayed lazily to " + lazy.getValue(x, y)
+							+ ", eagerly to " + eager.getValue(x, y));
+				}
+			}
+		}
+		for (int i = 0; i < 3; i++) {
+			int x = random.nextInt(eager.getXPoints());
+			int y = random.nextInt(eager.getYPoints());
+			int xLength = random.nextInt(eager.getXPoints());
+			int yLength = random.nextInt(eager.getYPoints());
+			if (lazy.getTotalInArea(x, y, xLength, yLength) != eager.getTotalInArea(x, y, xLength, yLength)) {
+				throw new AssertionError("After tick " + tick + " the lazy total from " + x + "," + y + " is " + lazy.getTotalInArea(x, y, xLength, yLength)
+						+ ", the eager " + eager.getTotalInArea(x, y, xLength, yLength));
+			}
+		}
+	}
+	
+}
@@ -0,0 +1,133 @@
+package main;
+
+import java.util.Random;
+
+// Runs the same random operations on each ByteStore and on a plain 2D array, and checks every point and sum agrees after each one.
+// Resizes grow every side, so points shift when the low sides grow, and the tiled store moves its origin.
+public class ByteStoreTest {
+	
+	private static final int OPERATIONS = 5000;
+	
+	public static void main(String[] args) {
+		check(new ArrayByteStore(23, 17), 23, 17);
+		check(new DirectByteStore(23, 17), 23, 17);
+		check(new TiledByteStore(23, 17), 23, 17);
+		checkForEachCell();
+		System.out.println("PASSED: " + OPERATIONS + " operations matched on each store");
+	}
+	
+	private static void check(ByteStore store, int xPoints, int yPoints) {
+		String name = store.getClass().getSimpleName();
+		Random random = new Random(1);
+		byte[][] reference = new byte[xPoints][yPoints];
+		for (int operation = 0; operation < OPERATIONS; operation++) {
+			int xStart = random.nextInt(xPoints);
+			int yStart = random.nextInt(yPoints);
+			int xEnd = xStart + random.nextInt(xPoints - xStart + 1);
+			int yEnd = yStart + random.nextInt(yPoints - yStart + 1);
+			byte value = (byte) (random.nextInt(256) - 128);
+			byte below = (byte) (random.nextInt(256) - 128);
+			switch (random.nextInt(7)) {
+			case 0:
+				store.set(xStart, yStart, value);
+				reference[xStart][yStart] = value;
+				break;
+			case 1:
+				store.fill(xStart, yStart, xEnd, yEnd, value);
+				for (int x = xStart; x < xEnd; x++) {
+					for (int y = yStart; y < yEnd; y++) {
+						reference[x][y] = value;
+					}
+				}
+				break;
+			case 2:
+				store.fillIfBelow(xStart, yStart, xEnd, yEnd, value, below);
+				for (int x = xStart; x < xEnd; x++) {
+					for (int y = yStart; y < yEnd; y++) {
+						if (reference[x][y] < below) reference[x][y] = value;
+					}
+				}
+				break;
+			case 3:
+				store.incrementBelow(below);
+				for (int x = 0; x < xPoints; x++) {
+					for (int y = 0; y < yPoints; y++) {
+						if (reference[x][y] < below) reference[x][y] += 1;
+					}
+				}
+				break;
+			case 4:
+				store.decrementAbove(below);
+				for (int x = 0; x < xPoints; x++) {
+					for (int y = 0; y < yPoints; y++) {
+						if (reference[x][y] > below) reference[x][y] -= 1;
+					}
+				}
+				break;
+			case 5:
+				int total = 0;
+				for (int x = xStart; x < xEnd; x++) {
+					for (int y = yStart; y < yEnd; y++) {
+						total += reference[x][y];
+					}
+				}
+				if (store.sum(xStart, yStart, xEnd, yEnd) != total) {
+					throw new AssertionError(name + " summed " + store.sum(xStart, yStart, xEnd, yEnd) + ", expected " + total);
+				}
+				break;
+			default:
+				if (operation % 10 != 0 || xPoints > 60) break;
+				int xChange = random.nextInt(7) - 3;
+				int yChange = random.nextInt(7) - 3;
+				store.resize(xChange, yChange);
+				byte[][] grown = new byte[xPoints + Math.abs(xChange)][yPoints + Math.abs(yChange)];
+				for (int x = 0; x < xPoints; x++) {
+					System.arraycopy(reference[x], 0, grown[x + Math.max(-xChange, 0)], Math.max(-yChange, 0), yPoints);
+				}
+				reference = grown;
+				xPoints = grown.length;
+				yPoints = grown[0].length;
+			}
+			compare(store, reference, xPoints, yPoints, name + " after operation " + operation);
+		}
+	}
+	
+	private static void compare(ByteStore store, byte[][] reference, int xPoints, int yPoints, String after) {
+		if (store.getXPoints() != xPoints || store.getYPoints() != yPoints) {
+			throw new AssertionError(after + " the store is " + store.getXPoints() + "x" + store.getYPoints() + ", expected " + xPoints + "x" + yPoints);
+		}
+		for (int x = 0; x < xPoints; x++) {
+			for (int y = 0; y < yPoints; y++) {
+				if (store.get(x, y) != reference[x][y]) {
+					throw new AssertionError(after + " point " + x + "," + y + " is " + store.get(x, y) + ", expected " + reference[x][y]);
+				}
+			}
+		}
+	}
+	
+	// forEachCell() visits each point of a clipped rectangle once, with the value getValue() reads, decay included.
+	private static void checkForEachCell() {
+		ByteMap map = new ByteMap(0, 0, 1, 1, new DirectByteStore(12, 9));
+		map.setDecay((byte) -20, (byte) 50);
+		Random random = new Random(2);
+		for (int i = 0; i < 60; i++) {
+			map.put(random.nextInt(12), random.nextInt(9), (byte) (random.nextInt(256) - 128));
+			if (i % 7 == 0) map.age();
+		}
+		int[] visits = new int[12 * 9];
+		map.forEachCell(-3, 2, 20, 7, (x, y, value) -> {
+			if (value != map.getValue(x, y)) {
+				throw new AssertionError("forEachCell read " + value + " at " + x + "," + y + ", getValue " + map.getValue(x, y));
+			}
+			visits[x * 9 + y]++;
+		});
+		for (int x = 0; x < 12; x++) {
+			for (int y = 0; y < 9; y++) {
+				if (visits[x * 9 + y] != (y >= 2 && y < 7 ? 1 : 0)) {
+					throw new AssertionError("forEachCell visited " + x + "," + y + " " + visits[x * 9 + y] + " times");
+				}
+			}
+		}
+	}
+	
+}
@@ -0,0 +1,110 @@
+package main;
+
+import java.util.Random;
+
+// Runs random hazard writes, clears, area fills and resizes on a map, and after each checks the incrementally kept components
+// against ones labelled fresh: the same points grouped together, with the same sizes, centroids and boxes. A component whose
+// points did not change must keep its label.
+public class HazardComponentsTest {
+	
+	private static final int OPERATIONS = 4000;
+	private static final byte HAZARD = 100;
+	
+	public static void main(String[] args) {
+		Random random = new Random(3);
+		ByteMap map = new ByteMap(0, 0, 1, 1, 30, 25);
+		HazardComponents components = new HazardComponents(map, HAZARD);
+		int[] labels = new int[0];
+		for (int operation = 0; operation < OPERATIONS; operation++) {
+			int x = random.nextInt(map.getXPoints());
+			int y = random.nextInt(map.getYPoints());
+			switch (random.nextInt(8)) {
+			case 0:
+			case 1:
+			case 2:
+				map.put(x, y, HAZARD);
+				break;
+			case 3:
+			case 4:
+				map.put(x, y, (byte) 0);
+				break;
+			case 5:
+				map.setArea(x, y, Math.min(x + 1 + random.nextInt(4), map.getXPoints()), Math.min(y + 1 + random.nextInt(4), map.getYPoints()), HAZARD);
+				break;
+			case 6:
+				map.setArea(x, y, Math.min(x + 1 + random.nextInt(3), map.getXPoints()), Math.min(y + 1 + random.nextInt(3), map.getYPoints()), (byte) 0);
+				break;
+			default:
+				if (operation % 400 == 7) map.resize(random.nextInt(3) - 1, random.nextInt(3) - 1);
+			}
+			// Clears several points between some queries, so more than one component is relabelled at once.
+			if (operation % 3 != 0) continue;
+			labels = compare(map, components, labels, operation);
+		}
+		System.out.println("PASSED: " + OPERATIONS + " changes kept the same components as a fresh labelling");
+	}
+	
+	// Returns the labels read, by point, for the next comparison.
+	private static int[] compare(ByteMap map, HazardComponents components, int[] lastLabels, int operation) {
+		HazardComponents fresh = new HazardComponents(map, HAZARD);
+		int xPoints = map.getXPoints();
+		int yPoints = map.getYPoints();
+		if (components.getComponentCount() != fresh.getComponentCount()) {
+			throw new AssertionError("After operation " + operation + " there are " + components.getComponentCount() + " components, "
+					+ fresh.getComponentCount() + " labelled fresh");
+		}
+		// Fresh label to kept label, each way, so both group the points the same.
+		LongIntMap toKept = new LongIntMap(16);
+		LongIntMap toFresh = new LongIntMap(16);
+		int[] labels = new int[xPoints * yPoints];
+		for (int x = 0; x < xPoints; x++) {
+			for (int y = 0; y < yPoints; y++) {
+				int kept = components.componentOf(x, y);
+				int label = fresh.componentOf(x, y);
+				labels[x * yPoints + y] = kept;
+				if ((kept < 0) != (label < 0)) {
+					throw new AssertionError("After operation " + operation + " point " + x + "," + y + " is in component " + kept
+							+ ", " + label + " labelled fresh");
+				}
+				if (kept < 0) continue;
+				if (toKept.get(label, kept) != kept || toFresh.get(kept, label) != label) {
+					throw new AssertionError("After operation " + operation + " point " + x + "," + y + " is grouped differently");
+				}
+				toKept.put(label, kept);
+				toFresh.put(kept, label);
+				if (components.sizeOf(x, y) != fresh.sizeOf(x, y)) {
+					throw new AssertionError("After operation " + operation + " the component at " + x + "," + y + " has "
+							+ components.sizeOf(x, y) + " points, " + fresh.sizeOf(x, y) + " labelled fresh");
+				}
+			}
+		}
+		for (int i = 0; i < components.getComponentCount(); i++) {
+			int j = 0;
+			while (fresh.getLabel(j) != toFresh.get(components.getLabel(i), -1)) j++;
+			if (components.getCentroidX(i) != fresh.getCentroidX(j) || components.getCentroidY(i) != fresh.getCentroidY(j)
+					|| components.getWidth(i) != fresh.getWidth(j) || components.getHeight(i) != fresh.getHeight(j)) {
+				throw new AssertionError("After operation " + operation + " component " + components.getLabel(i) + " has a different centroid or box");
+			}
+		}
+		// Unchanged components keep their labels, unless the map moved under them.
+		if (lastLabels.length == labels.length) {
+			for (int point = 0; point < labels.length; point++) {
+				if (labels[point] < 0 || lastLabels[point] == labels[point]) continue;
+				if (sameComponent(labels, lastLabels, labels[point], lastLabels[point])) {
+					throw new AssertionError("After operation " + operation + " an unchanged component was relabelled from "
+							+ lastLabels[point] + " to " + labels[point]);
+				}
+			}
+		}
+		return labels;
+	}
+	
+	// Whether a component holds exactly the points another held before.
+	private static boolean sameComponent(int[] labels, int[] lastLabels, int label, int lastLabel) {
+		for (int point = 0; point < labels.length; point++) {
+			if ((labels[point] == label) != (lastLabels[point] == lastLabel)) return false;
+		}
+		return true;
+	}
+	
+}
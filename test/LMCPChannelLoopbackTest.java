@@ -0,0 +1,76 @@
+package main;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+import afrl.cmasi.AltitudeType;
+import afrl.cmasi.Location3D;
+import avtas.lmcp.LMCPObject;
+
+// Sends MESSAGES objects from one LMCPChannel to another over a loopback socket, and checks every one is decoded in order.
+// The messages fill the write buffer many times over, so frames arrive split across reads.
+public class LMCPChannelLoopbackTest {
+	
+	private static final int MESSAGES = 20000;
+	
+	public static void main(String[] args) throws Exception {
+		ServerSocketChannel server = ServerSocketChannel.open();
+		server.bind(new InetSocketAddress("127.0.0.1", 0));
+		int port = ((InetSocketAddress) server.getLocalAddress()).getPort();
+		Exception[] writeFailure = new Exception[1];
+		Thread writer = new Thread(() -> {
+			try {
+				SocketChannel accepted = server.accept();
+				LMCPChannel channel = new LMCPChannel(accepted);
+				for (int i = 0; i < MESSAGES; i++) {
+					channel.write(new Location3D(i, -i, 0, AltitudeType.MSL));
+					if (i % 1000 == 999) channel.flush();
+				}
+				channel.flush();
+				channel.close();
+			} catch (Exception ex) {
+				writeFailure[0] = ex;
+			}
+		}, "Loopback Writer");
+		writer.start();
+		
+		LMCPChannel channel = LMCPChannel.connect("127.0.0.1", port);
+		int[] decoded = {0};
+		LMCPChannel.FrameHandler handler = frame -> {
+			int position = frame.position();
+			LMCPObject message = LMCPChannel.decode(frame);
+			if (frame.position() != position) {
+				throw new AssertionError("Decoding moved the frame position");
+			}
+			if (!(message instanceof Location3D)) {
+				throw new AssertionError("Message " + decoded[0] + " decoded as " + message);
+			}
+			Location3D location = (Location3D) message;
+			if (location.getLatitude() != decoded[0] || location.getLongitude() != -decoded[0]) {
+				throw new AssertionError("Message " + decoded[0] + " decoded out of order, latitude " + location.getLatitude());
+			}
+			decoded[0]++;
+		};
+		try {
+			while (true) {
+				channel.read(handler);
+			}
+		} catch (IOException ex) {
+			// The writer closed the connection.
+		}
+		writer.join();
+		channel.close();
+		server.close();
+		
+		if (writeFailure[0] != null) {
+			throw new AssertionError("Writing failed", writeFailure[0]);
+		}
+		if (decoded[0] != MESSAGES) {
+			throw new AssertionError("Decoded " + decoded[0] + " of " + MESSAGES + " messages");
+		}
+		System.out.println("PASSED: " + MESSAGES + " messages decoded in order");
+	}
+	
+}
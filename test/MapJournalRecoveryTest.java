@@ -0,0 +1,91 @@
+package main;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+// Journals random map changes from a child JVM that halts without closing anything, then recovers the directory and checks
+// the maps match what the child held when it died. Checkpoints are taken along the way, so both snapshot files are rewritten
+// from their changed tiles several times, and changes made after the last one are replayed from the journal.
+public class MapJournalRecoveryTest {
+	
+	private static final int OPERATIONS = 3000;
+	
+	public static void main(String[] args) throws Exception {
+		if (args.length == 2 && args[0].equals("write")) {
+			write(new File(args[1]));
+			return;
+		}
+		File directory = Files.createTempDirectory("journal").toFile();
+		Process child = new ProcessBuilder(new File(System.getProperty("java.home"), "bin/java").getPath(),
+				"-cp", System.getProperty("java.class.path"), MapJournalRecoveryTest.class.getName(), "write", directory.getPath())
+				.inheritIO().start();
+		if (child.waitFor() != 1) {
+			throw new AssertionError("The writer exited with " + child.exitValue() + ", not its halt");
+		}
+		byte[] expected = Files.readAllBytes(new File(directory, "expected").toPath());
+		
+		MapManager mapManager = newMapManager();
+		mapManager.enableJournal(directory);
+		ByteBuffer recovered = ByteBuffer.allocate(mapManager.snapshotSize());
+		mapManager.writeSnapshot(recovered);
+		mapManager.closeJournal();
+		if (!Arrays.equals(recovered.array(), expected)) {
+			int i = 0;
+			while (i < expected.length && i < recovered.capacity() && recovered.get(i) == expected[i]) i++;
+			throw new AssertionError("Recovered maps differ from the written ones at byte " + i + " of " + expected.length
+					+ ", recovered " + recovered.capacity() + " bytes");
+		}
+		for (File file : directory.listFiles()) {
+			file.delete();
+		}
+		directory.delete();
+		System.out.println("PASSED: " + OPERATIONS + " journalled changes recovered after a crash");
+	}
+	
+	private static MapManager newMapManager() {
+		return new MapManager(-120, 35, 0.09, 0.09, 90, 90, new int[] {6, 3, 1});
+	}
+	
+	// Runs in the child JVM. Writes the expected maps once every record is in the journal, then halts as a crash would.
+	private static void write(File directory) throws Exception {
+		MapManager mapManager = newMapManager();
+		mapManager.enableJournal(directory);
+		Random random = new Random(4);
+		for (int operation = 0; operation < OPERATIONS; operation++) {
+			double longitude = -120 + random.nextDouble() * 0.09;
+			double latitude = 35 + random.nextDouble() * 0.09;
+			int resIndex = random.nextInt(3);
+			switch (random.nextInt(5)) {
+			case 0:
+				// Near the middle, so the maps only grow now and then.
+				mapManager.setHazard(-120 + 0.03 + random.nextDouble() * 0.03, 35 + 0.03 + random.nextDouble() * 0.03, resIndex);
+				break;
+			case 1:
+				mapManager.setSafe(longitude, latitude, resIndex);
+				break;
+			case 2:
+				mapManager.setSafeSwath(longitude, latitude, longitude + 0.005, latitude - 0.003, resIndex);
+				break;
+			case 3:
+				mapManager.tick();
+				break;
+			default:
+				if (operation % 500 == 4) mapManager.resize(random.nextInt(3) - 1, random.nextInt(3) - 1);
+			}
+			if (operation % 200 == 199) {
+				// Lets the last checkpoint finish, so this one is not skipped.
+				while (!mapManager.isJournalDrained()) Thread.sleep(1);
+				mapManager.checkpoint();
+			}
+		}
+		while (!mapManager.isJournalDrained()) Thread.sleep(1);
+		ByteBuffer expected = ByteBuffer.allocate(mapManager.snapshotSize());
+		mapManager.writeSnapshot(expected);
+		Files.write(new File(directory, "expected").toPath(), expected.array());
+		Runtime.getRuntime().halt(1);
+	}
+	
+}
@@ -0,0 +1,95 @@
+package main;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+// Runs random writes on a decaying map, and checks the best points found by its pyramid against a scan scoring every point:
+// the same points, in the same order, with the same scores. The map is aged every step and only settled now and then, so
+// stored values are often out of date, and it is refilled below the decay range and grows now and then.
+public class MapPyramidTest {
+	
+	private static final int STEPS = 1500;
+	
+	public static void main(String[] args) {
+		Random random = new Random(8);
+		ByteMap map = new ByteMap(-120, 35, 0.1, 0.1, new ArrayByteStore(45, 38));
+		map.setDecay((byte) -20, (byte) 50);
+		MapPyramid pyramid = new MapPyramid(map);
+		double[] longitudes = new double[3];
+		double[] latitudes = new double[3];
+		int[] xOut = new int[20];
+		int[] yOut = new int[20];
+		double[] scoreOut = new double[20];
+		int queries = 0;
+		for (int step = 0; step < STEPS; step++) {
+			// Whole blocks then sit below the decay range, rising towards it until settled.
+			if (step % 200 == 0) map.setArea(0, 0, map.getXPoints(), map.getYPoints(), (byte) -100);
+			for (int i = random.nextInt(6); i > 0; i--) {
+				int x = random.nextInt(map.getXPoints());
+				int y = random.nextInt(map.getYPoints());
+				byte value = (byte) (random.nextInt(256) - 128);
+				switch (random.nextInt(3)) {
+				case 0:
+					map.put(x, y, value);
+					break;
+				case 1:
+					map.setArea(x, y, x + random.nextInt(6), y + random.nextInt(6), value);
+					break;
+				default:
+					for (int j = 0; j < 3; j++) {
+						longitudes[j] = map.getInitLongitude() + random.nextDouble() * map.getLongitude();
+						latitudes[j] = map.getInitLatitude() + random.nextDouble() * map.getLatitude();
+					}
+					map.setConvexIfBelow(longitudes, latitudes, 3, value, (byte) 80);
+				}
+			}
+			map.age();
+			if (step % 40 == 0) map.settle();
+			if (step % 300 == 150) map.resize(random.nextInt(3) - 1, random.nextInt(3) - 1);
+			
+			double longitude = map.getInitLongitude() + (random.nextDouble() * 1.4 - 0.2) * map.getLongitude();
+			double latitude = map.getInitLatitude() + (random.nextDouble() * 1.4 - 0.2) * map.getLatitude();
+			double distanceWeight = new double[] {0, 50, 300, 3000}[random.nextInt(4)];
+			BitSet excluded = new BitSet();
+			for (int i = random.nextInt(40); i > 0; i--) {
+				excluded.set(random.nextInt(map.getXPoints() * map.getYPoints()));
+			}
+			int count = 1 + random.nextInt(20);
+			int found = pyramid.bestPoints(longitude, latitude, distanceWeight, excluded, count, xOut, yOut, scoreOut);
+			compare(map, longitude, latitude, distanceWeight, excluded, count, found, xOut, yOut, scoreOut, step);
+			queries++;
+		}
+		System.out.println("PASSED: " + queries + " pyramid searches matched a full scan");
+	}
+	
+	private static void compare(ByteMap map, double longitude, double latitude, double distanceWeight, BitSet excluded, int count,
+			int found, int[] xOut, int[] yOut, double[] scoreOut, int step) {
+		int yPoints = map.getYPoints();
+		int points = map.getXPoints() * yPoints;
+		double[] scores = new double[points];
+		Integer[] order = new Integer[points];
+		int candidates = 0;
+		for (int point = 0; point < points; point++) {
+			if (excluded.get(point)) continue;
+			int x = point / yPoints, y = point % yPoints;
+			double distance = Math.hypot(latitude - map.convertYPoint(y), longitude - map.convertXPoint(x));
+			scores[point] = (double) map.getValue(x, y) - distance * distanceWeight;
+			order[candidates++] = point;
+		}
+		// Best first, ties by lowest index.
+		Arrays.sort(order, 0, candidates, (a, b) -> scores[a] != scores[b] ? Double.compare(scores[b], scores[a]) : Integer.compare(a, b));
+		int expected = Math.min(count, candidates);
+		if (found != expected) {
+			throw new AssertionError("At step " + step + " the pyramid found " + found + " points, the scan " + expected);
+		}
+		for (int i = 0; i < found; i++) {
+			int point = order[i];
+			if (xOut[i] != point / yPoints || yOut[i] != point % yPoints || scoreOut[i] != scores[point]) {
+				throw new AssertionError("At step " + step + " point " + i + " found is " + xOut[i] + "," + yOut[i] + " scoring " + scoreOut[i]
+						+ ", the scan's " + point / yPoints + "," + point % yPoints + " scoring " + scores[point]);
+			}
+		}
+	}
+	
+}
@@ -0,0 +1,144 @@
+package main;
+
+import java.util.Arrays;
+import java.util.Random;
+
+// Simplifies random star shaped loops and unit stepped rectangles and checks the vertices kept: in loop order from the first,
+// within the budget, and with every dropped vertex within the tolerance of the line between the kept ones around it unless the
+// budget ran out. With no budget to stop it, the result must match plain recursive Douglas-Peucker from the same anchors.
+public class PolygonSimplifierTest {
+	
+	private static final int LOOPS = 3000;
+	
+	public static void main(String[] args) {
+		Random random = new Random(15);
+		PolygonSimplifier simplifier = new PolygonSimplifier();
+		int[] keptOut = new int[200];
+		checkRectangle(simplifier, keptOut);
+		for (int loop = 0; loop < LOOPS; loop++) {
+			int count = 3 + random.nextInt(60);
+			int[] vertices = starLoop(random, count);
+			double tolerance = new double[] {0, 0.5, 1, 3, 8}[random.nextInt(5)];
+			int maxVertices = random.nextBoolean() ? Integer.MAX_VALUE : 3 + random.nextInt(10);
+			int kept = simplifier.simplifyLoop(vertices, tolerance, maxVertices, keptOut);
+			
+			if (kept > maxVertices || kept < Math.min(3, count) || keptOut[0] != 0) {
+				throw new AssertionError("Loop " + loop + " of " + count + " vertices kept " + kept + " starting at " + keptOut[0]);
+			}
+			for (int i = 1; i < kept; i++) {
+				if (keptOut[i] <= keptOut[i - 1] || keptOut[i] >= count) {
+					throw new AssertionError("Loop " + loop + " kept vertices out of order: " + Arrays.toString(Arrays.copyOf(keptOut, kept)));
+				}
+			}
+			if (kept < maxVertices) {
+				for (int i = 0; i < kept; i++) {
+					int start = keptOut[i];
+					int end = i + 1 < kept ? keptOut[i + 1] : count;
+					for (int dropped = start + 1; dropped < end; dropped++) {
+						double error = lineDistance(vertices, start, end % count, dropped);
+						if (error > tolerance) {
+							throw new AssertionError("Loop " + loop + " dropped vertex " + dropped + " at " + error + " from the outline, over " + tolerance);
+						}
+					}
+				}
+			}
+			if (maxVertices == Integer.MAX_VALUE) {
+				int[] expected = douglasPeucker(vertices, count, tolerance);
+				if (expected.length >= 3 && !Arrays.equals(expected, Arrays.copyOf(keptOut, kept))) {
+					throw new AssertionError("Loop " + loop + " kept " + Arrays.toString(Arrays.copyOf(keptOut, kept)) + ", recursion keeps "
+							+ Arrays.toString(expected));
+				}
+			}
+			// The first count vertices of a longer array give the same result.
+			int[] padded = Arrays.copyOf(vertices, vertices.length + 2 * random.nextInt(5));
+			int[] paddedOut = new int[200];
+			if (simplifier.simplifyLoop(padded, count, tolerance, maxVertices, paddedOut) != kept
+					|| !Arrays.equals(Arrays.copyOf(paddedOut, kept), Arrays.copyOf(keptOut, kept))) {
+				throw new AssertionError("Loop " + loop + " simplified differently from a longer array");
+			}
+		}
+		System.out.println("PASSED: " + LOOPS + " loops simplified within tolerance and budget");
+	}
+	
+	// A rectangle traced one point at a time, as a contour is, keeps only its corners.
+	private static void checkRectangle(PolygonSimplifier simplifier, int[] keptOut) {
+		int[] vertices = new int[2 * 2 * (12 + 7)];
+		int i = 0;
+		for (int x = 0; x < 12; x++, i++) set(vertices, i, x, 0);
+		for (int y = 0; y < 7; y++, i++) set(vertices, i, 12, y);
+		for (int x = 12; x > 0; x--, i++) set(vertices, i, x, 7);
+		for (int y = 7; y > 0; y--, i++) set(vertices, i, 0, y);
+		int kept = simplifier.simplifyLoop(vertices, 0.5, 32, keptOut);
+		if (!Arrays.equals(Arrays.copyOf(keptOut, kept), new int[] {0, 12, 19, 31})) {
+			throw new AssertionError("A stepped rectangle kept " + Arrays.toString(Arrays.copyOf(keptOut, kept)));
+		}
+	}
+	
+	private static void set(int[] vertices, int i, int x, int y) {
+		vertices[2 * i] = x;
+		vertices[2 * i + 1] = y;
+	}
+	
+	// Vertices at increasing angles around the origin, at random radii, on whole coordinates.
+	private static int[] starLoop(Random random, int count) {
+		double[] angles = new double[count];
+		for (int i = 0; i < count; i++) angles[i] = random.nextDouble() * 2 * Math.PI;
+		Arrays.sort(angles);
+		int[] vertices = new int[2 * count];
+		for (int i = 0; i < count; i++) {
+			double radius = 5 + random.nextInt(30);
+			set(vertices, i, (int) Math.round(Math.cos(angles[i]) * radius), (int) Math.round(Math.sin(angles[i]) * radius));
+		}
+		return vertices;
+	}
+	
+	// Distance of a vertex from the line through two others, or from the first if they coincide.
+	private static double lineDistance(int[] vertices, int a, int b, int p) {
+		double dx = vertices[2 * b] - vertices[2 * a], dy = vertices[2 * b + 1] - vertices[2 * a + 1];
+		double px = vertices[2 * p] - vertices[2 * a], py = vertices[2 * p + 1] - vertices[2 * a + 1];
+		double length = Math.hypot(dx, dy);
+		return length == 0 ? Math.hypot(px, py) : Math.abs(dx * py - dy * px) / length;
+	}
+	
+	private static int[] douglasPeucker(int[] vertices, int count, double tolerance) {
+		int far = 0;
+		long farDistance = -1;
+		for (int i = 1; i < count; i++) {
+			long dx = vertices[2 * i] - vertices[0];
+			long dy = vertices[2 * i + 1] - vertices[1];
+			if (dx * dx + dy * dy > farDistance) {
+				farDistance = dx * dx + dy * dy;
+				far = i;
+			}
+		}
+		boolean[] kept = new boolean[count];
+		kept[0] = true;
+		kept[far] = true;
+		split(vertices, count, 0, far, tolerance, kept);
+		split(vertices, count, far, count, tolerance, kept);
+		int found = 0;
+		int[] keptIndexes = new int[count];
+		for (int i = 0; i < count; i++) {
+			if (kept[i]) keptIndexes[found++] = i;
+		}
+		return Arrays.copyOf(keptIndexes, found);
+	}
+	
+	private static void split(int[] vertices, int count, int start, int end, double tolerance, boolean[] kept) {
+		if (end - start < 2) return;
+		int farthest = start + 1;
+		double maxError = -1;
+		for (int i = start + 1; i < end; i++) {
+			double error = lineDistance(vertices, start, end % count, i);
+			if (error > maxError) {
+				maxError = error;
+				farthest = i;
+			}
+		}
+		if (maxError <= tolerance) return;
+		kept[farthest] = true;
+		split(vertices, count, start, farthest, tolerance, kept);
+		split(vertices, count, farthest, end, tolerance, kept);
+	}
+	
+}
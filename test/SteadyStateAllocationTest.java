@@ -0,0 +1,147 @@
+package main;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import afrl.cmasi.AirVehicleState;
+import afrl.cmasi.AltitudeType;
+import afrl.cmasi.Location3D;
+import afrl.cmasi.MissionCommand;
+import afrl.cmasi.searchai.HazardZoneDetection;
+import afrl.cmasi.searchai.HazardZoneEstimateReport;
+import avtas.lmcp.LMCPObject;
+
+// Checks that once its buffers have grown, a control tick allocates nothing. Drones on every resolution fly to the targets
+// they are sent, stare and are sent on again, so each tick runs the auction, scores candidates and plans routes, and time moves
+// on so hazard zones are traced and reported. A known hazard zone is detected again after one of its points was cleared,
+// so the hazard components relabel. Messages go through a client without a connection, which collects them as mainLoop() does.
+// Heap allocated is counted across every thread, as the planning passes run on the common pool. The ticks run in a child JVM
+// compiling with C1 alone: it removes no allocations by escape analysis, and the profiled tiers handing over to C2 allocate a
+// few bytes of their own now and then, which would be counted against the tick.
+public class SteadyStateAllocationTest {
+	
+	private static final int DRONES = 9;
+	private static final int WARMUP_TICKS = 3000;
+	private static final int TICKS = 500;
+	private static final int WINDOWS = 10;
+	private static final long TICK_MILLIS = 1000;
+	
+	private static int commands = 0;
+	private static int reports = 0;
+	
+	public static void main(String[] args) throws Exception {
+		if (args.length == 1 && args[0].equals("run")) {
+			run();
+			return;
+		}
+		Process child = new ProcessBuilder(new File(System.getProperty("java.home"), "bin/java").getPath(), "-XX:TieredStopAtLevel=1",
+				"-cp", System.getProperty("java.class.path"), SteadyStateAllocationTest.class.getName(), "run")
+				.inheritIO().start();
+		if (child.waitFor() != 0) {
+			throw new AssertionError("The steady state ticks failed in the child JVM, which exited with " + child.exitValue());
+		}
+	}
+	
+	// Runs in the child JVM.
+	private static void run() throws Exception {
+		if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+			System.out.println("SKIPPED: thread allocation counting is not supported by this JVM");
+			return;
+		}
+		com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		if (!threadBean.isThreadAllocatedMemorySupported() || !threadBean.isThreadAllocatedMemoryEnabled()) {
+			System.out.println("SKIPPED: thread allocation counting is not supported by this JVM");
+			return;
+		}
+		
+		Client client = new Client(null);
+		DroneRegistry drones = new DroneRegistry();
+		Control control = new Control(client, drones, -120, 35, 0.09, 0.09);
+		MapManager mapManager = control.getMapManager();
+		// Drones report a reused state, moved in place.
+		AirVehicleState[] states = new AirVehicleState[DRONES];
+		for (int i = 0; i < DRONES; i++) {
+			Drone drone = control.newDrone(i + 1);
+			drone.setResolutionIndex(i % 3);
+			drones.add(drone);
+			states[i] = new AirVehicleState();
+			states[i].setID(i + 1);
+			states[i].setLocation(new Location3D(35 + 0.01 + 0.008 * i, -120 + 0.01 + 0.007 * i, 300, AltitudeType.MSL));
+			drones.setState(i, states[i]);
+		}
+		List<HazardZoneDetection> detections = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			HazardZoneDetection detection = new HazardZoneDetection();
+			detection.setDetectingEnitiyID(-1);
+			detection.setDetectedLocation(new Location3D(35 + 0.0445 + 0.001 * i, -120 + 0.0445, 0, AltitudeType.MSL));
+			detections.add(detection);
+		}
+		double clearedLongitude = -120 + 0.0445;
+		double clearedLatitude = 35 + 0.0465;
+		
+		long time = 0;
+		for (int i = 0; i < WARMUP_TICKS; i++) {
+			tick(client, control, mapManager, drones, states, detections, clearedLongitude, clearedLatitude, time += TICK_MILLIS);
+		}
+		commands = 0;
+		reports = 0;
+		long[] threadIds = threadBean.getAllThreadIds();
+		// Counting itself may allocate, so an empty count is taken off.
+		long overhead = -allocatedBytes(threadBean, threadIds);
+		overhead += allocatedBytes(threadBean, threadIds);
+		long[] allocated = new long[WINDOWS];
+		for (int window = 0; window < WINDOWS; window++) {
+			long start = allocatedBytes(threadBean, threadIds);
+			for (int i = 0; i < TICKS; i++) {
+				tick(client, control, mapManager, drones, states, detections, clearedLongitude, clearedLatitude, time += TICK_MILLIS);
+			}
+			allocated[window] = allocatedBytes(threadBean, threadIds) - start - overhead;
+		}
+		control.close();
+		
+		for (int window = 0; window < WINDOWS; window++) {
+			if (allocated[window] != 0) {
+				throw new AssertionError("Window " + window + " of " + TICKS + " steady state ticks allocated " + allocated[window] + " bytes");
+			}
+		}
+		if (commands == 0 || reports == 0) {
+			throw new AssertionError("The steady state sent " + commands + " mission commands and " + reports + " zone reports");
+		}
+		System.out.println("PASSED: " + WINDOWS + " windows of " + TICKS + " steady state ticks allocated 0 bytes, sending "
+				+ commands + " mission commands and " + reports + " zone reports");
+	}
+	
+	private static void tick(Client client, Control control, MapManager mapManager, DroneRegistry drones, AirVehicleState[] states,
+			List<HazardZoneDetection> detections, double clearedLongitude, double clearedLatitude, long time) throws Exception {
+		// Drones on a mission arrive next to their target, sweeping the ground between.
+		for (int i = 0; i < DRONES; i++) {
+			Drone drone = drones.getDrone(i);
+			if (drone.onMission()) {
+				Location3D location = states[i].getLocation();
+				location.setLongitude(drone.getTargetLongitude() - 0.001);
+				location.setLatitude(drone.getTargetLatitude() - 0.001);
+				drones.setState(i, states[i]);
+			}
+		}
+		mapManager.getHeatMap().setPoint(clearedLongitude, clearedLatitude, (byte) -100);
+		control.tick(detections, time);
+		List<LMCPObject> messages = client.flushMessages();
+		for (int i = 0; i < messages.size(); i++) {
+			if (messages.get(i) instanceof MissionCommand) commands++;
+			if (messages.get(i) instanceof HazardZoneEstimateReport) reports++;
+		}
+		messages.clear();
+	}
+	
+	private static long allocatedBytes(com.sun.management.ThreadMXBean threadBean, long[] threadIds) {
+		long total = 0;
+		for (int i = 0; i < threadIds.length; i++) {
+			long bytes = threadBean.getThreadAllocatedBytes(threadIds[i]);
+			if (bytes > 0) total += bytes;
+		}
+		return total;
+	}
+	
+}
@@ -0,0 +1,89 @@
+package main;
+
+import java.util.Random;
+
+// Samples zones moving and growing at known rates, with noise on each centroid and extent, once a second as Control does,
+// and checks the estimates converge on the true speed, direction and growth rate. Each zone then turns and changes pace,
+// and the estimates must follow once older samples have faded. Zones that stop being sampled must be dropped without
+// disturbing the others, whose slots move to stay packed.
+public class ZoneEstimatorTest {
+	
+	private static final int ZONES = 12;
+	private static final int SECONDS = 600;
+	private static final double METRES_PER_DEGREE = 111320;
+	private static final double LATITUDE = 35;
+	
+	public static void main(String[] args) {
+		Random random = new Random(18);
+		ZoneEstimator estimator = new ZoneEstimator();
+		double[] speeds = new double[ZONES];
+		double[] directions = new double[ZONES];
+		double[] growthRates = new double[ZONES];
+		double[] x = new double[ZONES];
+		double[] y = new double[ZONES];
+		double[] extents = new double[ZONES];
+		for (int zone = 0; zone < ZONES; zone++) {
+			speeds[zone] = 0.5 + 0.25 * zone;
+			directions[zone] = 30 * zone;
+			growthRates[zone] = 0.1 * (zone - 5);
+			x[zone] = 2000 * zone;
+			extents[zone] = 300;
+		}
+		long time = 0;
+		
+		time = run(estimator, random, speeds, directions, growthRates, x, y, extents, time, SECONDS, 1);
+		check(estimator, speeds, directions, growthRates, 1, "at first");
+		for (int zone = 0; zone < ZONES; zone++) {
+			speeds[zone] = 3 - 0.2 * zone;
+			directions[zone] = (directions[zone] + 135) % 360;
+			growthRates[zone] = -growthRates[zone] / 2;
+		}
+		time = run(estimator, random, speeds, directions, growthRates, x, y, extents, time, SECONDS, 1);
+		check(estimator, speeds, directions, growthRates, 1, "after turning");
+		
+		// Only every other zone goes on being sampled. The rest are freed at the end of the first round, and later slots
+		// move down into theirs. The estimates are read soon after, while they still rest on the samples that were moved.
+		run(estimator, random, speeds, directions, growthRates, x, y, extents, time, 5, 2);
+		check(estimator, speeds, directions, growthRates, 2, "after the others were dropped");
+		for (int zone = 1; zone < ZONES; zone += 2) {
+			if (estimator.getSpeed(zone) != 0 || estimator.getGrowthRate(zone) != 0) {
+				throw new AssertionError("Zone " + zone + " still has estimates after it stopped being sampled");
+			}
+		}
+		System.out.println("PASSED: estimates of " + ZONES + " zones converged, followed a change of course and survived others being dropped");
+	}
+	
+	// Moves every zone along for some seconds, sampling every sampleEvery'th zone once a second. Returns the time reached.
+	private static long run(ZoneEstimator estimator, Random random, double[] speeds, double[] directions, double[] growthRates,
+			double[] x, double[] y, double[] extents, long time, int seconds, int sampleEvery) {
+		double metresPerDegreeLongitude = METRES_PER_DEGREE * Math.cos(Math.toRadians(LATITUDE));
+		for (int second = 0; second < seconds; second++) {
+			time += 1000;
+			for (int zone = 0; zone < ZONES; zone++) {
+				x[zone] += speeds[zone] * Math.sin(Math.toRadians(directions[zone]));
+				y[zone] += speeds[zone] * Math.cos(Math.toRadians(directions[zone]));
+				extents[zone] += growthRates[zone];
+				if (zone % sampleEvery != 0) continue;
+				double longitude = -120 + (x[zone] + random.nextGaussian() * 3) / metresPerDegreeLongitude;
+				double latitude = LATITUDE + (y[zone] + random.nextGaussian() * 3) / METRES_PER_DEGREE;
+				estimator.addSample(zone, longitude, latitude, extents[zone] + random.nextGaussian(), time);
+			}
+			estimator.removeUnsampled();
+		}
+		return time;
+	}
+	
+	private static void check(ZoneEstimator estimator, double[] speeds, double[] directions, double[] growthRates, int checkEvery, String when) {
+		for (int zone = 0; zone < ZONES; zone += checkEvery) {
+			double directionError = Math.abs(estimator.getDirection(zone) - directions[zone]);
+			directionError = Math.min(directionError, 360 - directionError);
+			if (Math.abs(estimator.getSpeed(zone) - speeds[zone]) > 0.05 || directionError > 3
+					|| Math.abs(estimator.getGrowthRate(zone) - growthRates[zone]) > 0.05) {
+				throw new AssertionError("Zone " + zone + " " + when + " was estimated at " + estimator.getSpeed(zone) + " m/s towards "
+						+ estimator.getDirection(zone) + ", growing " + estimator.getGrowthRate(zone) + " m/s. It moves at " + speeds[zone]
+						+ " m/s towards " + directions[zone] + ", growing " + growthRates[zone] + " m/s");
+			}
+		}
+	}
+	
+}